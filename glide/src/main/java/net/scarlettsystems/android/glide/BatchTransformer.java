@@ -0,0 +1,232 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Process;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BatchTransformer.java
+ * Applies one transformation to many bitmaps, for example when generating
+ * thumbnails for an album. Work is spread over a bounded number of background
+ * threads which share the same transformation instance, RenderScript context
+ * and Glide BitmapPool, so per-image setup and scratch allocations are paid
+ * once rather than per call. Results are delivered as soon as each one completes.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class BatchTransformer
+{
+	private final Context mContext;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Receives the results of a batch. Methods are called on the worker
+	 * threads, in completion order rather than list order.
+	 */
+	public interface Callback
+	{
+		/**
+		 * Called for each successfully transformed bitmap.
+		 *
+		 * @param index index of the source in the submitted list
+		 * @param source the source bitmap
+		 * @param result the transformed bitmap, owned by the caller
+		 */
+		void onResult(int index, Bitmap source, Bitmap result);
+
+		/**
+		 * Called for each bitmap whose transformation failed.
+		 *
+		 * @param index index of the source in the submitted list
+		 * @param source the source bitmap
+		 * @param e the cause of failure
+		 */
+		void onError(int index, Bitmap source, Exception e);
+
+		/**
+		 * Called once after every bitmap has been handled, or skipped due to cancellation.
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * Handle to a submitted batch.
+	 */
+	public static final class Batch
+	{
+		private final CancellationToken token = new CancellationToken();
+		private final AtomicInteger remaining;
+
+		private Batch(int size)
+		{
+			remaining = new AtomicInteger(size);
+		}
+
+		/**
+		 * Cancels the batch. Transformations in progress stop at their next
+		 * cancellation check and pending ones are skipped.
+		 */
+		public void cancel()
+		{
+			token.cancel();
+		}
+
+		public boolean isCancelled()
+		{
+			return token.isCancelled();
+		}
+
+		/**
+		 * Returns the number of bitmaps not yet handled.
+		 *
+		 * @return remaining count
+		 */
+		public int getRemaining()
+		{
+			return remaining.get();
+		}
+	}
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param context current context
+	 * @param parallelism maximum number of bitmaps transformed at once
+	 */
+	public BatchTransformer(Context context, int parallelism)
+	{
+		mContext = context.getApplicationContext();
+		int threads = Math.max(1, parallelism);
+		executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new WorkerFactory());
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Constructor using one thread per available processor, minus one for the UI.
+	 *
+	 * @param context current context
+	 */
+	public BatchTransformer(Context context)
+	{
+		this(context, Runtime.getRuntime().availableProcessors() - 1);
+	}
+
+	/**
+	 * Transforms every bitmap in the list with the given transformation.
+	 * Each source is copied into a pooled bitmap first, so sources are never
+	 * modified or recycled, and may be immutable.
+	 *
+	 * @param sources bitmaps to transform
+	 * @param transformation transformation applied to each bitmap
+	 * @param callback receiver of results
+	 * @return handle that can cancel the batch
+	 */
+	public Batch submit(List<Bitmap> sources, final Transformation<Bitmap> transformation, final Callback callback)
+	{
+		final List<Bitmap> items = new ArrayList<>(sources);
+		final BitmapPool pool = Glide.get(mContext).getBitmapPool();
+		final Batch batch = new Batch(items.size());
+		if(items.isEmpty())
+		{
+			callback.onComplete();
+			return batch;
+		}
+		for(int c = 0; c < items.size(); c++)
+		{
+			final int index = c;
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					Bitmap source = items.get(index);
+					try
+					{
+						if(!batch.token.isCancelled())
+						{
+							CancellationToken.setCurrent(batch.token);
+							Bitmap copy = Transformer.copyOf(pool, source);
+							Bitmap result;
+							try
+							{
+								result = TransformRunner.run(mContext, transformation, copy);
+							}
+							catch(RuntimeException e)
+							{
+								pool.put(copy);
+								throw e;
+							}
+							if(result != copy)
+							{
+								pool.put(copy);
+							}
+							callback.onResult(index, source, result);
+						}
+					}
+					catch(TransformationCancelledException e)
+					{
+						//Skipped, as the batch was cancelled
+					}
+					catch(RuntimeException e)
+					{
+						callback.onError(index, source, e);
+					}
+					finally
+					{
+						CancellationToken.setCurrent(null);
+						if(batch.remaining.decrementAndGet() == 0)
+						{
+							callback.onComplete();
+						}
+					}
+				}
+			});
+		}
+		return batch;
+	}
+
+	/**
+	 * Stops the worker threads once submitted batches have finished.
+	 * No further batches may be submitted.
+	 */
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	private static class WorkerFactory implements ThreadFactory
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			Thread thread = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					runnable.run();
+				}
+			}, "batch-transformer-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.util.Util;
+
+import java.security.MessageDigest;
+
+/**
+ * BlurDownsample.java
+ * A DownsampleStrategy that lets Glide decode sources at a lower resolution
+ * when they are about to be heavily blurred, since the blur destroys the
+ * detail that a full resolution decode would preserve. JPEGs can then be
+ * decoded with a larger inSampleSize, saving most of the decode and blur cost.
+ * <p>
+ * A blurred image decoded at a lower resolution must be blurred by a
+ * proportionally smaller radius to look the same, so use
+ * {@link #options(Context, GaussianBlur)} or {@link #options(Context, TintedBlur)},
+ * which also apply the blur with that compensation. The radius is then
+ * measured in pixels of the requested size.
+ * <pre>
+ * Glide.with(this).load(url).apply(BlurDownsample.options(this, new GaussianBlur(this, 40))).into(imageView);
+ * </pre>
+ * Shadow is not supported, as it draws the image itself sharply over the
+ * shadow, which would show the reduced resolution.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see GaussianBlur
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class BlurDownsample extends DownsampleStrategy
+{
+	/** Radius, in decoded pixels, below which decoding is not reduced. */
+	private static final float DETAIL_RADIUS = 8f;
+	private final DownsampleStrategy base;
+	private final float blurRadius;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param base strategy whose scale factor is reduced, such as DownsampleStrategy.DEFAULT
+	 * @param blurRadius blur radius in pixels of the requested size
+	 */
+	public BlurDownsample(DownsampleStrategy base, float blurRadius)
+	{
+		this.base = base;
+		this.blurRadius = Math.max(0f, blurRadius);
+	}
+
+	/**
+	 * Returns request options that decode at a reduced resolution for the
+	 * blur and apply it, compensating its radius for the reduction.
+	 *
+	 * @param context current context
+	 * @param blur blur to apply
+	 * @return request options
+	 */
+	public static RequestOptions options(Context context, GaussianBlur blur)
+	{
+		return options(context, blur, blur.getBlurRadius());
+	}
+
+	/**
+	 * Returns request options that decode at a reduced resolution for the
+	 * blur and apply it, compensating its radius for the reduction.
+	 *
+	 * @param context current context
+	 * @param blur blur to apply
+	 * @return request options
+	 */
+	public static RequestOptions options(Context context, TintedBlur blur)
+	{
+		return options(context, blur, blur.getBlurRadius());
+	}
+
+	private static <T extends Transformation<Bitmap> & ScalableTransformation> RequestOptions options(Context context, T blur, float blurRadius)
+	{
+		return RequestOptions.downsampleOf(new BlurDownsample(DownsampleStrategy.DEFAULT, blurRadius))
+				.transform(new Compensated(context, blur));
+	}
+
+	/**
+	 * Returns the fraction of the base resolution at which a source blurred
+	 * by the given radius may be decoded.
+	 *
+	 * @param blurRadius blur radius in pixels
+	 * @return scale between 0 and 1
+	 */
+	public static float getDecodeScale(float blurRadius)
+	{
+		return blurRadius <= DETAIL_RADIUS ? 1f : DETAIL_RADIUS / blurRadius;
+	}
+
+	@Override
+	public float getScaleFactor(int sourceWidth, int sourceHeight, int requestedWidth, int requestedHeight)
+	{
+		return base.getScaleFactor(sourceWidth, sourceHeight, requestedWidth, requestedHeight)
+				* getDecodeScale(blurRadius);
+	}
+
+	@Override
+	public SampleSizeRounding getSampleSizeRounding(int sourceWidth, int sourceHeight, int requestedWidth, int requestedHeight)
+	{
+		//Any detail lost by rounding down is removed by the blur anyway
+		return SampleSizeRounding.MEMORY;
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof BlurDownsample)
+		{
+			BlurDownsample other = (BlurDownsample) object;
+			return base.equals(other.base)
+					&& blurRadius == other.blurRadius;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Util.hashCode(base.hashCode(),
+				Util.hashCode(blurRadius));
+	}
+
+	/**
+	 * Applies a blur with its radius scaled by how far the decoded source
+	 * falls short of the requested size.
+	 */
+	private static class Compensated extends BitmapTransformation
+	{
+		private static final String ID = "net.scarlettsystems.android.transformations.glide.BlurDownsample";
+		private static final byte[] ID_BYTES = ID.getBytes();
+		private Context mContext;
+		private final Transformation<Bitmap> blur;
+
+		<T extends Transformation<Bitmap> & ScalableTransformation> Compensated(Context context, T blur)
+		{
+			mContext = context.getApplicationContext();
+			this.blur = blur;
+		}
+
+		@Override
+		protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+		{
+			long start = System.nanoTime();
+			//The dimension fitted to the request gives the reduction, the other may overflow it
+			float scale = Math.min(1f, Math.min((float)source.getWidth() / (float)outWidth,
+					(float)source.getHeight() / (float)outHeight));
+			Transformation<Bitmap> transformation = scale < 1f ? ((ScalableTransformation)blur).scaledBy(scale) : blur;
+			Bitmap bitmap = TransformRunner.run(mContext, transformation, source, outWidth, outHeight);
+			TransformationMetrics.record("BlurDownsample", scale < 1f ? "compensated" : "unscaled",
+					source.getWidth(), source.getHeight(), System.nanoTime() - start);
+			return bitmap;
+		}
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (object instanceof Compensated)
+			{
+				Compensated other = (Compensated) object;
+				return blur.equals(other.blur);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Util.hashCode(ID.hashCode(),
+					blur.hashCode());
+		}
+
+		@Override
+		public void updateDiskCacheKey(MessageDigest messageDigest)
+		{
+			messageDigest.update(ID_BYTES);
+			blur.updateDiskCacheKey(messageDigest);
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.v8.renderscript.Allocation;
+import android.support.v8.renderscript.Element;
+import android.support.v8.renderscript.RenderScript;
+import android.support.v8.renderscript.ScriptIntrinsicBlur;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * BlurEngine.java
+ * Shared RenderScript blur used by the transformations in this package.
+ * A single RenderScript context is created lazily from the application
+ * context and kept for the lifetime of the process, so only the first
+ * blur pays for its initialisation.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+final class BlurEngine
+{
+	static final float RENDERSCRIPT_MAX_BLUR_RADIUS = 25.0f;
+	private static final int TILE_BYTES = 256 * 1024;
+	private static RenderScript renderScript;
+
+	private BlurEngine(){}
+
+	/**
+	 * Returns the process wide RenderScript context, creating it if required.
+	 *
+	 * @param context any context, only its application context is retained
+	 * @return shared RenderScript context
+	 */
+	static synchronized RenderScript getRenderScript(Context context)
+	{
+		if(renderScript == null)
+		{
+			renderScript = RenderScript.create(context.getApplicationContext());
+		}
+		return renderScript;
+	}
+
+	/**
+	 * Blurs bitmap by the given radius and writes the result to copyTo.
+	 * Both bitmaps must have the same dimensions; they may be the same bitmap.
+	 * Radii are clamped to the natively supported maximum of 25.0 and radii of
+	 * zero or less simply copy the input.
+	 *
+	 * @param context current context
+	 * @param bitmap input bitmap
+	 * @param copyTo output bitmap
+	 * @param radius blur radius in pixels
+	 */
+	static void blur(Context context, Bitmap bitmap, Bitmap copyTo, float radius)
+	{
+		if(radius <= 0f)
+		{
+			if(bitmap != copyTo)
+			{
+				new Canvas(copyTo).drawBitmap(bitmap, 0, 0, null);
+			}
+			return;
+		}
+		final RenderScript rs = getRenderScript(context);
+		final Allocation input = Allocation.createFromBitmap( rs, bitmap, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT );
+		final Allocation output = Allocation.createTyped( rs, input.getType() );
+		final ScriptIntrinsicBlur script = ScriptIntrinsicBlur.create( rs, Element.U8_4( rs ) );
+		try
+		{
+			script.setRadius( Math.min(radius, RENDERSCRIPT_MAX_BLUR_RADIUS) );
+			script.setInput( input );
+			script.forEach( output );
+			output.copyTo( copyTo );
+		}
+		finally
+		{
+			script.destroy();
+			output.destroy();
+			input.destroy();
+		}
+	}
+
+	/**
+	 * Blurs bitmap by the given radius in horizontal stripes and writes the result
+	 * to copyTo, which must be a different, transparent bitmap of the same dimensions.
+	 * Each stripe is blurred with enough rows of context above and below for the
+	 * result to be identical to a full blur, while only stripe-sized scratch
+	 * bitmaps and allocations are needed. Cancellation is checked between stripes.
+	 * Stripes are written to copyTo with the given paint, so that a colour
+	 * filter can be applied as part of the same write.
+	 *
+	 * @param context current context
+	 * @param pool pool providing the stripe bitmaps
+	 * @param bitmap input bitmap
+	 * @param copyTo output bitmap
+	 * @param radius blur radius in pixels
+	 * @param token cancellation token, may be null
+	 * @param paint paint used to write the stripes, may be null
+	 */
+	static void blurTiled(Context context, BitmapPool pool, Bitmap bitmap, Bitmap copyTo, float radius,
+						  CancellationToken token, Paint paint)
+	{
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int halo = (int)Math.ceil(Math.min(radius, RENDERSCRIPT_MAX_BLUR_RADIUS)) + 1;
+		int stripeHeight = getStripeHeight(width, radius);
+		Canvas output = new Canvas(copyTo);
+		Rect src = new Rect();
+		Rect dst = new Rect();
+		for(int top = 0; top < height; top += stripeHeight)
+		{
+			CancellationToken.throwIfCancelled(token);
+			int bottom = Math.min(height, top + stripeHeight);
+			int tileTop = Math.max(0, top - halo);
+			int tileBottom = Math.min(height, bottom + halo);
+			Bitmap tile = pool.get(width, tileBottom - tileTop, Bitmap.Config.ARGB_8888);
+			try
+			{
+				src.set(0, tileTop, width, tileBottom);
+				dst.set(0, 0, width, tileBottom - tileTop);
+				new Canvas(tile).drawBitmap(bitmap, src, dst, null);
+				blur(context, tile, tile, radius);
+				src.set(0, top - tileTop, width, bottom - tileTop);
+				dst.set(0, top, width, bottom);
+				output.drawBitmap(tile, src, dst, paint);
+			}
+			finally
+			{
+				pool.put(tile);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of output rows blurred per stripe by blurTiled.
+	 */
+	static int getStripeHeight(int width, float radius)
+	{
+		int halo = (int)Math.ceil(Math.min(radius, RENDERSCRIPT_MAX_BLUR_RADIUS)) + 1;
+		return Math.max(2 * halo, TILE_BYTES / (Math.max(1, width) * 4));
+	}
+
+	/**
+	 * Blur setup kept by a transformation between calls, so that repeated
+	 * blurs of same sized bitmaps, such as the frames of an animated image,
+	 * reuse one script and pair of allocations instead of creating them per
+	 * frame. The setup is only created on the second consecutive blur of a
+	 * size, so transformations applied to a single still image keep nothing.
+	 * Concurrent callers that find it busy fall back to a one-off blur.
+	 * Setups are released by releaseAll, which MemoryPressure calls when it
+	 * flushes caches, and are not created again while under pressure.
+	 */
+	static final class FrameBlur
+	{
+		private static final Map<FrameBlur, Boolean> ACTIVE = new WeakHashMap<>();
+		private final Context context;
+		private final ReentrantLock lock = new ReentrantLock();
+		private ScriptIntrinsicBlur script;
+		private Allocation input, output;
+		private int width, height;
+
+		FrameBlur(Context context)
+		{
+			this.context = context.getApplicationContext();
+		}
+
+		/**
+		 * Blurs bitmap by the given radius and writes the result to copyTo,
+		 * as {@link BlurEngine#blur(Context, Bitmap, Bitmap, float)}.
+		 */
+		void blur(Bitmap bitmap, Bitmap copyTo, float radius)
+		{
+			if(radius <= 0f || bitmap.getConfig() != Bitmap.Config.ARGB_8888 || !lock.tryLock())
+			{
+				BlurEngine.blur(context, bitmap, copyTo, radius);
+				return;
+			}
+			try
+			{
+				if(bitmap.getWidth() != width || bitmap.getHeight() != height)
+				{
+					release();
+					width = bitmap.getWidth();
+					height = bitmap.getHeight();
+					BlurEngine.blur(context, bitmap, copyTo, radius);
+					return;
+				}
+				if(script == null)
+				{
+					if(MemoryPressure.getLevel() != MemoryPressure.LEVEL_NONE)
+					{
+						BlurEngine.blur(context, bitmap, copyTo, radius);
+						return;
+					}
+					RenderScript rs = getRenderScript(context);
+					input = Allocation.createFromBitmap( rs, bitmap, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT );
+					output = Allocation.createTyped( rs, input.getType() );
+					script = ScriptIntrinsicBlur.create( rs, Element.U8_4( rs ) );
+					script.setInput( input );
+					synchronized(ACTIVE)
+					{
+						ACTIVE.put(this, Boolean.TRUE);
+					}
+				}
+				else
+				{
+					input.copyFrom( bitmap );
+				}
+				script.setRadius( Math.min(radius, RENDERSCRIPT_MAX_BLUR_RADIUS) );
+				script.forEach( output );
+				output.copyTo( copyTo );
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Releases the script and allocations of every frame blur that holds
+		 * them. Setups that are blurring are skipped, and released by their
+		 * next blur of a different size.
+		 */
+		static void releaseAll()
+		{
+			ArrayList<FrameBlur> active;
+			synchronized(ACTIVE)
+			{
+				active = new ArrayList<>(ACTIVE.keySet());
+			}
+			for(FrameBlur frameBlur : active)
+			{
+				if(!frameBlur.lock.tryLock()){continue;}
+				try
+				{
+					frameBlur.release();
+					frameBlur.width = 0;
+					frameBlur.height = 0;
+				}
+				finally
+				{
+					frameBlur.lock.unlock();
+				}
+			}
+		}
+
+		private void release()
+		{
+			if(script == null){return;}
+			script.destroy();
+			output.destroy();
+			input.destroy();
+			script = null;
+			output = null;
+			input = null;
+			synchronized(ACTIVE)
+			{
+				ACTIVE.remove(this);
+			}
+		}
+	}
+}
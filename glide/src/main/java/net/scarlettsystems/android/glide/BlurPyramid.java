@@ -0,0 +1,264 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.v4.util.LruCache;
+
+import java.util.ArrayList;
+
+/**
+ * BlurPyramid.java
+ * A set of progressively blurred copies of a source image, from which any
+ * intermediate blur radius can be composed cheaply. This is intended for
+ * blurs whose radius changes every frame, such as scroll or animation driven
+ * backgrounds, where running a full GaussianBlur per frame is too slow.
+ * <p>
+ * Each level is blurred from the previous one, and stored at a resolution
+ * proportional to its radius, since heavily blurred images carry no fine
+ * detail. A requested radius is composed by cross-fading the two nearest
+ * levels. Pyramids are kept in a process wide LRU cache keyed by a caller
+ * supplied source key, so they are only computed once per source.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see GaussianBlur
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class BlurPyramid
+{
+	private static final float FIRST_LEVEL_RADIUS = 2f;
+	private static final float LEVEL_STORAGE_RADIUS = 8f;
+	private static final Cache CACHE = new Cache((int)Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16));
+
+	private final float[] radii;
+	private final Bitmap[] levels;
+	private final int width, height;
+	private final Rect bounds = new Rect();
+	private final Canvas composeCanvas = new Canvas();
+	private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	private BlurPyramid(Context context, Bitmap source, float maxRadius)
+	{
+		width = source.getWidth();
+		height = source.getHeight();
+
+		ArrayList<Float> levelRadii = new ArrayList<>();
+		levelRadii.add(0f);
+		float radius = FIRST_LEVEL_RADIUS;
+		while(true)
+		{
+			levelRadii.add(radius);
+			if(radius >= maxRadius){break;}
+			radius *= 2f;
+		}
+
+		radii = new float[levelRadii.size()];
+		levels = new Bitmap[levelRadii.size()];
+		radii[0] = 0f;
+		levels[0] = source.copy(Bitmap.Config.ARGB_8888, false);
+		for(int c = 1; c < radii.length; c++)
+		{
+			CancellationToken.throwIfCancelled(null);
+			radii[c] = levelRadii.get(c);
+			levels[c] = buildLevel(context, levels[c - 1], radii[c - 1], radii[c]);
+		}
+	}
+
+	/**
+	 * Blurs the previous level up to the next radius. Gaussian blurs compose
+	 * by adding their variances, so only the difference between the two radii
+	 * needs to be applied.
+	 */
+	private Bitmap buildLevel(Context context, Bitmap previous, float previousRadius, float radius)
+	{
+		float scale = Math.min(1f, LEVEL_STORAGE_RADIUS / radius);
+		int scaledWidth = Math.max(1, Math.round(width * scale));
+		int scaledHeight = Math.max(1, Math.round(height * scale));
+		Bitmap level = Bitmap.createScaledBitmap(previous, scaledWidth, scaledHeight, true);
+		if(level == previous)
+		{
+			level = previous.copy(Bitmap.Config.ARGB_8888, true);
+		}
+		float levelScale = (float)scaledWidth / (float)width;
+		float increment = (float)Math.sqrt(radius * radius - previousRadius * previousRadius);
+		BlurEngine.blur(context, level, level, increment * levelScale);
+		return level;
+	}
+
+	/**
+	 * Returns the pyramid cached under the given key, building and caching it
+	 * from the source if it is absent or does not reach the requested radius.
+	 * The source bitmap is copied and may be recycled by the caller afterwards.
+	 * Building a pyramid is as expensive as a few GaussianBlur passes, so this
+	 * should be called off the main thread the first time. Building stops early
+	 * if the calling thread is interrupted or its bound CancellationToken is cancelled.
+	 *
+	 * @param context current context
+	 * @param key unique key of the source image, such as its URL
+	 * @param source the unblurred source image
+	 * @param maxRadius largest radius that will be composed, in source pixels
+	 * @return cached or newly built pyramid
+	 */
+	public static BlurPyramid obtain(Context context, String key, Bitmap source, float maxRadius)
+	{
+		BlurPyramid pyramid = CACHE.get(key);
+		if(pyramid != null && pyramid.getMaxRadius() >= maxRadius)
+		{
+			return pyramid;
+		}
+		pyramid = new BlurPyramid(context, source, Math.max(FIRST_LEVEL_RADIUS, maxRadius));
+		CACHE.put(key, pyramid);
+		return pyramid;
+	}
+
+	/**
+	 * Returns the pyramid cached under the given key without building one.
+	 *
+	 * @param key unique key of the source image
+	 * @return cached pyramid, or null if absent
+	 */
+	public static BlurPyramid peek(String key)
+	{
+		return CACHE.get(key);
+	}
+
+	/**
+	 * Removes the pyramid cached under the given key.
+	 *
+	 * @param key unique key of the source image
+	 */
+	public static void evict(String key)
+	{
+		CACHE.remove(key);
+	}
+
+	/**
+	 * Removes all cached pyramids.
+	 */
+	public static void clearCache()
+	{
+		CACHE.evictAll();
+	}
+
+	/**
+	 * Sets the maximum number of bytes used by cached pyramids.
+	 * Defaults to one sixteenth of the maximum heap size.
+	 *
+	 * @param bytes cache size in bytes
+	 */
+	public static void setCacheSize(int bytes)
+	{
+		CACHE.resize(Math.max(1, bytes));
+	}
+
+	/**
+	 * Returns the largest radius that can be composed from this pyramid.
+	 * Larger radii are clamped to it.
+	 *
+	 * @return maximum radius in source pixels
+	 */
+	public float getMaxRadius()
+	{
+		return radii[radii.length - 1];
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Returns the number of bytes held by all levels of this pyramid.
+	 *
+	 * @return size in bytes
+	 */
+	public int getByteCount()
+	{
+		int bytes = 0;
+		for(Bitmap level : levels)
+		{
+			bytes += level.getRowBytes() * level.getHeight();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Draws the image blurred by the given radius into the given bounds of the canvas.
+	 * No memory is allocated, so this is safe to call on every frame.
+	 *
+	 * @param canvas canvas to draw on
+	 * @param radius blur radius in source pixels
+	 * @param dst bounds to draw into
+	 */
+	public synchronized void draw(Canvas canvas, float radius, Rect dst)
+	{
+		radius = Math.max(0f, Math.min(radius, getMaxRadius()));
+		int upper = 1;
+		while(upper < radii.length - 1 && radii[upper] < radius)
+		{
+			upper++;
+		}
+		int lower = upper - 1;
+		float fraction = (radius - radii[lower]) / (radii[upper] - radii[lower]);
+
+		paint.setAlpha(255);
+		canvas.drawBitmap(levels[lower], null, dst, paint);
+		if(fraction > 0f)
+		{
+			paint.setAlpha(Math.round(fraction * 255f));
+			canvas.drawBitmap(levels[upper], null, dst, paint);
+		}
+	}
+
+	/**
+	 * Composes the image blurred by the given radius into the supplied bitmap,
+	 * scaling it to fill the bitmap. The bitmap must be mutable. Reusing the same
+	 * bitmap every frame makes this allocation free.
+	 *
+	 * @param radius blur radius in source pixels
+	 * @param into mutable bitmap to draw into
+	 * @return the supplied bitmap
+	 */
+	public synchronized Bitmap compose(float radius, Bitmap into)
+	{
+		bounds.set(0, 0, into.getWidth(), into.getHeight());
+		composeCanvas.setBitmap(into);
+		draw(composeCanvas, radius, bounds);
+		composeCanvas.setBitmap(null);
+		return into;
+	}
+
+	/**
+	 * Composes the image blurred by the given radius into a new bitmap of the
+	 * source's dimensions. Prefer {@link #compose(float, Bitmap)} for per-frame use.
+	 *
+	 * @param radius blur radius in source pixels
+	 * @return newly allocated blurred bitmap
+	 */
+	public Bitmap compose(float radius)
+	{
+		return compose(radius, Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+	}
+
+	private static class Cache extends LruCache<String, BlurPyramid>
+	{
+		Cache(int maxBytes)
+		{
+			super(maxBytes);
+		}
+
+		@Override
+		protected int sizeOf(String key, BlurPyramid value)
+		{
+			return value.getByteCount();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package net.scarlettsystems.android.glide;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+
+/**
+ * CacheKeys.java
+ * Helpers for writing algorithm versions into disk cache keys. Each
+ * transformation declares the version of its algorithm, which is increased
+ * whenever its output changes, so that an upgrade invalidates only that
+ * transformation's cached results rather than the whole disk cache.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+final class CacheKeys
+{
+	private CacheKeys(){}
+
+	/**
+	 * Adds the algorithm version to a disk cache key. Version 1 predates
+	 * versioned keys and adds nothing, so that its keys stay unchanged.
+	 */
+	static void addVersion(ArrayList<byte[]> messages, int version)
+	{
+		if(version > 1)
+		{
+			messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(version).array());
+		}
+	}
+
+	/**
+	 * Updates a disk cache key with the algorithm version, as {@link #addVersion(ArrayList, int)}.
+	 */
+	static void updateVersion(MessageDigest messageDigest, int version)
+	{
+		if(version > 1)
+		{
+			messageDigest.update(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(version).array());
+		}
+	}
+}
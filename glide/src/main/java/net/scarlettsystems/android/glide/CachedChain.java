@@ -0,0 +1,133 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.util.Util;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * CachedChain.java
+ * Applies several transformations in order, like Glide's MultiTransformation,
+ * sharing intermediate results with other chains through IntermediateCache.
+ * The chain resumes from the longest prefix of its stages already cached for
+ * the same source, and caches the result after each stage it computes.
+ * <pre>
+ * new CachedChain(context, url, new GaussianBlur(context, 20));
+ * new CachedChain(context, url, new GaussianBlur(context, 20), new Tint(context));
+ * </pre>
+ * Glide's own caches already hold final results, so this only pays off when
+ * chains share a prefix. The final result and its cache key are the same as
+ * those of the plain chain.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see IntermediateCache
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class CachedChain extends BitmapTransformation
+{
+	private static final String ID = "net.scarlettsystems.android.transformations.glide.CachedChain";
+	private Context mContext;
+	private final String sourceKey;
+	private final Transformation<Bitmap>[] stages;
+
+	/**
+	 * Default constructor. Stages are applied in the given order.
+	 *
+	 * @param context current context
+	 * @param sourceKey unique key of the source image, such as its URL
+	 * @param stages transformations to apply
+	 */
+	@SafeVarargs
+	public CachedChain(Context context, String sourceKey, Transformation<Bitmap>... stages)
+	{
+		if(stages.length == 0)
+		{
+			throw new IllegalArgumentException("CachedChain must have at least one stage.");
+		}
+		mContext = context.getApplicationContext();
+		this.sourceKey = sourceKey;
+		this.stages = stages.clone();
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		long start = System.nanoTime();
+		String[] keys = getPrefixKeys(source.getWidth(), source.getHeight(), outWidth, outHeight);
+		//Resume from the longest cached prefix
+		Bitmap current = source;
+		int next = 0;
+		for(int c = stages.length - 1; c >= 0; c--)
+		{
+			Bitmap cached = IntermediateCache.get(pool, keys[c]);
+			if(cached != null)
+			{
+				current = cached;
+				next = c + 1;
+				break;
+			}
+		}
+		for(int c = next; c < stages.length; c++)
+		{
+			CancellationToken.throwIfCancelled(null);
+			Bitmap result = TransformRunner.run(mContext, stages[c], current, outWidth, outHeight);
+			if(current != source && result != current)
+			{
+				pool.put(current);
+			}
+			current = result;
+			IntermediateCache.put(keys[c], current);
+		}
+		TransformationMetrics.record("CachedChain", next == stages.length ? "cached" : "transformed",
+				source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return current;
+	}
+
+	/**
+	 * Returns the intermediate cache key after each stage for a source of the
+	 * given size, which depends on the target the source was decoded for.
+	 */
+	private String[] getPrefixKeys(int width, int height, int outWidth, int outHeight)
+	{
+		String[] keys = new String[stages.length];
+		for(int c = 0; c < stages.length; c++)
+		{
+			keys[c] = IntermediateCache.keyOf(sourceKey, width, height, outWidth, outHeight, stages, c + 1);
+		}
+		return keys;
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof CachedChain)
+		{
+			CachedChain other = (CachedChain) object;
+			return Arrays.equals(stages, other.stages);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Util.hashCode(ID.hashCode(),
+				Arrays.hashCode(stages));
+	}
+
+	@Override
+	public void updateDiskCacheKey(MessageDigest messageDigest)
+	{
+		for(Transformation<Bitmap> stage : stages)
+		{
+			stage.updateDiskCacheKey(messageDigest);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package net.scarlettsystems.android.glide;
+
+/**
+ * CancellationToken.java
+ * Signals long running transformations that their result is no longer needed.
+ * Transformations check for cancellation between stages and stripes, release
+ * their scratch bitmaps and throw a TransformationCancelledException, which
+ * Glide discards for cancelled requests.
+ * <p>
+ * A token can be given to a transformation directly, for example one created
+ * per list item and cancelled when the item is recycled, or bound to the
+ * current thread with {@link #setCurrent(CancellationToken)}. Interrupting the
+ * thread running a transformation has the same effect as cancelling.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class CancellationToken
+{
+	private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+	private volatile boolean cancelled = false;
+
+	public CancellationToken(){}
+
+	/**
+	 * Cancels all transformations observing this token.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * Binds a token to the calling thread. Every transformation run on this
+	 * thread observes it until it is replaced or cleared with null.
+	 *
+	 * @param token token to bind, or null to clear
+	 */
+	public static void setCurrent(CancellationToken token)
+	{
+		if(token == null)
+		{
+			CURRENT.remove();
+		}
+		else
+		{
+			CURRENT.set(token);
+		}
+	}
+
+	/**
+	 * Returns the token bound to the calling thread.
+	 *
+	 * @return bound token, or null if none
+	 */
+	public static CancellationToken getCurrent()
+	{
+		return CURRENT.get();
+	}
+
+	/**
+	 * Returns whether work on the calling thread should stop, because the
+	 * thread was interrupted or the given or bound token was cancelled.
+	 * The thread's interrupted status is left unchanged.
+	 *
+	 * @param token token of the transformation, may be null
+	 * @return true if cancelled
+	 */
+	static boolean isCancelled(CancellationToken token)
+	{
+		if(token != null && token.cancelled){return true;}
+		CancellationToken current = CURRENT.get();
+		if(current != null && current.cancelled){return true;}
+		return Thread.currentThread().isInterrupted();
+	}
+
+	/**
+	 * Throws if work on the calling thread should stop.
+	 *
+	 * @param token token of the transformation, may be null
+	 * @throws TransformationCancelledException if cancelled
+	 */
+	static void throwIfCancelled(CancellationToken token)
+	{
+		if(isCancelled(token))
+		{
+			throw new TransformationCancelledException();
+		}
+	}
+}
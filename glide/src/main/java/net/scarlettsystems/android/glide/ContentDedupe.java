@@ -0,0 +1,127 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * ContentDedupe.java
+ * Wraps a transformation so that sources with identical pixels are only
+ * transformed once, however many URLs they are served under. Each decoded
+ * source is hashed, and finished results are looked up in IntermediateCache
+ * by the pixel hash, the target size and the transformation's cache key.
+ * <p>
+ * Hashing reads every pixel once, which is far cheaper than a blur or shadow
+ * but not free, so this is best kept for images that are known to repeat,
+ * such as avatars and placeholders.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see IntermediateCache
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class ContentDedupe extends BitmapTransformation
+{
+	private Context mContext;
+	private final Transformation<Bitmap> delegate;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param context current context
+	 * @param delegate transformation to deduplicate
+	 */
+	public ContentDedupe(Context context, Transformation<Bitmap> delegate)
+	{
+		mContext = context.getApplicationContext();
+		this.delegate = delegate;
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		long start = System.nanoTime();
+		//Hashing reads the pixels, so a hardware source is hashed and transformed from one software copy
+		Bitmap input = HardwareBitmaps.isHardware(source) ? HardwareBitmaps.softwareCopy(source) : source;
+		Bitmap result = null;
+		try
+		{
+			String key = IntermediateCache.keyOf(hash(input), input.getWidth(), input.getHeight(),
+					outWidth, outHeight, delegate);
+			result = IntermediateCache.get(pool, key);
+			if(result != null)
+			{
+				TransformationMetrics.record("ContentDedupe", "cached",
+						source.getWidth(), source.getHeight(), System.nanoTime() - start);
+				return result;
+			}
+			result = TransformRunner.run(mContext, delegate, input, outWidth, outHeight);
+			IntermediateCache.put(key, result);
+			TransformationMetrics.record("ContentDedupe", "transformed",
+					source.getWidth(), source.getHeight(), System.nanoTime() - start);
+			return result;
+		}
+		finally
+		{
+			if(input != source && result != input)
+			{
+				pool.put(input);
+			}
+		}
+	}
+
+	/**
+	 * Returns a SHA-256 digest of the source's dimensions and pixels, read a
+	 * slab of rows at a time through the thread's PixelBuffer. A collision
+	 * would serve another image's result, so a cryptographic digest is used.
+	 */
+	static String hash(Bitmap source)
+	{
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int slabRows = PixelBuffer.getSlabRows(width);
+		PixelBuffer buffer = PixelBuffer.get();
+		MessageDigest digest = IntermediateCache.newDigest();
+		ByteBuffer bytes = buffer.getBytes(8);
+		bytes.putInt(width).putInt(height).flip();
+		digest.update(bytes);
+		for(int top = 0; top < height; top += slabRows)
+		{
+			int rows = Math.min(slabRows, height - top);
+			int[] pixels = buffer.read(source, top, rows);
+			bytes = buffer.getBytes(4 * width * rows);
+			bytes.asIntBuffer().put(pixels, 0, width * rows);
+			digest.update(bytes);
+		}
+		return "pixels:" + IntermediateCache.toHex(digest.digest());
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof ContentDedupe)
+		{
+			ContentDedupe other = (ContentDedupe) object;
+			return delegate.equals(other.delegate);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return delegate.hashCode();
+	}
+
+	@Override
+	public void updateDiskCacheKey(MessageDigest messageDigest)
+	{
+		delegate.updateDiskCacheKey(messageDigest);
+	}
+}
@@ -0,0 +1,353 @@
+package net.scarlettsystems.android.glide;
+
+import android.graphics.Bitmap;
+import android.support.annotation.ColorInt;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.util.Util;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Curves.java
+ * Maps the colours of the image through 256 entry lookup tables, as with
+ * the curves tool of an image editor. Any per channel effect, linear or not,
+ * such as gamma, posterisation or contrast, is applied in a single pass.
+ * <p>
+ * In per channel mode each channel is mapped through its own table. In
+ * luminance mode the luminance of each pixel is mapped through all three
+ * tables, which produces greyscale and duotone effects. Alpha is unchanged.
+ * Factories are provided for common curves, and tables can also be supplied
+ * directly.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see Greyscale
+ * @see Inverse
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class Curves extends BitmapTransformation implements ResolutionIndependent
+{
+	private static final String ID = "net.scarlettsystems.android.transformations.glide.Curves";
+	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 1;
+	private final int[] red, green, blue;
+	private final boolean luminance;
+	private CancellationToken cancellationToken;
+
+	private Curves(int[] red, int[] green, int[] blue, boolean luminance)
+	{
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		this.luminance = luminance;
+	}
+
+	/**
+	 * Returns curves mapping each channel through its own table.
+	 * Each table must have 256 entries, which are clamped to between 0 and 255.
+	 *
+	 * @param red table for the red channel
+	 * @param green table for the green channel
+	 * @param blue table for the blue channel
+	 * @return per channel curves
+	 */
+	public static Curves perChannel(int[] red, int[] green, int[] blue)
+	{
+		return new Curves(copyOf(red), copyOf(green), copyOf(blue), false);
+	}
+
+	/**
+	 * Returns curves mapping the luminance of each pixel through the tables
+	 * to produce its red, green and blue values.
+	 * Each table must have 256 entries, which are clamped to between 0 and 255.
+	 *
+	 * @param red table producing the red channel
+	 * @param green table producing the green channel
+	 * @param blue table producing the blue channel
+	 * @return luminance curves
+	 */
+	public static Curves luminance(int[] red, int[] green, int[] blue)
+	{
+		return new Curves(copyOf(red), copyOf(green), copyOf(blue), true);
+	}
+
+	/**
+	 * Returns curves that desaturate the image, as Greyscale.
+	 *
+	 * @return greyscale curves
+	 */
+	public static Curves greyscale()
+	{
+		int[] ramp = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			ramp[c] = c;
+		}
+		return new Curves(ramp, ramp, ramp, true);
+	}
+
+	/**
+	 * Returns curves that invert the colours of the image, as Inverse.
+	 *
+	 * @return inverse curves
+	 */
+	public static Curves inverse()
+	{
+		int[] table = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			table[c] = 255 - c;
+		}
+		return new Curves(table, table, table, false);
+	}
+
+	/**
+	 * Returns curves raising each normalised channel to the given power.
+	 * Values below 1 brighten the image and values above 1 darken it.
+	 *
+	 * @param gamma exponent, greater than 0
+	 * @return gamma curves
+	 */
+	public static Curves gamma(float gamma)
+	{
+		double exponent = Math.max(0.01f, gamma);
+		int[] table = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			table[c] = (int)Math.round(255.0 * Math.pow(c / 255.0, exponent));
+		}
+		return new Curves(table, table, table, false);
+	}
+
+	/**
+	 * Returns curves reducing each channel to the given number of evenly spaced levels.
+	 *
+	 * @param levels number of levels per channel, at least 2
+	 * @return posterising curves
+	 */
+	public static Curves posterize(int levels)
+	{
+		int steps = Math.max(1, Math.min(255, levels - 1));
+		int[] table = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			table[c] = Math.round(Math.round(c * steps / 255f) * 255f / steps);
+		}
+		return new Curves(table, table, table, false);
+	}
+
+	/**
+	 * Returns curves scaling each channel's distance from mid-grey.
+	 * Values above 1 increase contrast and values between 0 and 1 reduce it.
+	 *
+	 * @param contrast contrast factor
+	 * @return contrast curves
+	 */
+	public static Curves contrast(float contrast)
+	{
+		float factor = Math.max(0f, contrast);
+		int[] table = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			table[c] = clamp(Math.round((c - 127.5f) * factor + 127.5f));
+		}
+		return new Curves(table, table, table, false);
+	}
+
+	/**
+	 * Returns curves mapping dark areas towards one colour and light areas
+	 * towards another, by luminance.
+	 *
+	 * @param shadows colour of black, as a @ColorInt
+	 * @param highlights colour of white, as a @ColorInt
+	 * @return duotone curves
+	 */
+	public static Curves duotone(@ColorInt int shadows, @ColorInt int highlights)
+	{
+		return new Curves(
+				gradient((shadows >> 16) & 0xFF, (highlights >> 16) & 0xFF),
+				gradient((shadows >> 8) & 0xFF, (highlights >> 8) & 0xFF),
+				gradient(shadows & 0xFF, highlights & 0xFF),
+				true);
+	}
+
+	/**
+	 * Sets a token that stops the transformation early once cancelled.
+	 * Loads with different tokens are not merged by Glide, so cancelling one
+	 * never aborts another.
+	 *
+	 * @param token cancellation token, or null for none
+	 * @return returns self
+	 */
+	public Curves setCancellationToken(CancellationToken token)
+	{
+		this.cancellationToken = token;
+		return this;
+	}
+
+	@Override
+	public boolean isResolutionIndependent()
+	{
+		return true;
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		if(HardwareBitmaps.isHardware(source))
+		{
+			//The tables are applied to the source's pixels, so map one software copy
+			Bitmap copy = HardwareBitmaps.softwareCopy(source);
+			Bitmap bitmap = null;
+			try
+			{
+				bitmap = transform(pool, copy, outWidth, outHeight);
+				return bitmap;
+			}
+			finally
+			{
+				if(bitmap != copy)
+				{
+					pool.put(copy);
+				}
+			}
+		}
+		long start = System.nanoTime();
+		Bitmap bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+		try
+		{
+			apply(source, bitmap);
+		}
+		catch(TransformationCancelledException e)
+		{
+			pool.put(bitmap);
+			throw e;
+		}
+		TransformationMetrics.record("Curves", "lut", source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return bitmap;
+	}
+
+	/**
+	 * Maps the source through the tables into the output, a slab of rows at a
+	 * time through the thread's PixelBuffer. The output may be the source
+	 * itself if it is mutable.
+	 */
+	void apply(Bitmap source, Bitmap output)
+	{
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int slabRows = PixelBuffer.getSlabRows(width);
+		PixelBuffer buffer = PixelBuffer.get();
+		for(int top = 0; top < height; top += slabRows)
+		{
+			CancellationToken.throwIfCancelled(cancellationToken);
+			int rows = Math.min(slabRows, height - top);
+			mapPixels(buffer.read(source, top, rows), width * rows);
+			buffer.write(output, top, rows);
+		}
+	}
+
+	/**
+	 * Maps the first count pixels through the tables in place, keeping their alpha.
+	 */
+	void mapPixels(int[] pixels, int count)
+	{
+		final int[] r = red, g = green, b = blue;
+		if(luminance)
+		{
+			for(int x = 0; x < count; x++)
+			{
+				int pixel = pixels[x];
+				//Rec. 709 weights, as ColorMatrix.setSaturation, summing to 256
+				int l = (54 * ((pixel >> 16) & 0xFF) + 183 * ((pixel >> 8) & 0xFF) + 19 * (pixel & 0xFF)) >> 8;
+				pixels[x] = (pixel & 0xFF000000) | (r[l] << 16) | (g[l] << 8) | b[l];
+			}
+		}
+		else
+		{
+			for(int x = 0; x < count; x++)
+			{
+				int pixel = pixels[x];
+				pixels[x] = (pixel & 0xFF000000)
+						| (r[(pixel >> 16) & 0xFF] << 16)
+						| (g[(pixel >> 8) & 0xFF] << 8)
+						| b[pixel & 0xFF];
+			}
+		}
+	}
+
+	private static int[] gradient(int from, int to)
+	{
+		int[] table = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			table[c] = Math.round(from + (to - from) * (c / 255f));
+		}
+		return table;
+	}
+
+	private static int[] copyOf(int[] table)
+	{
+		if(table == null || table.length != 256)
+		{
+			throw new IllegalArgumentException("Tables must have 256 entries.");
+		}
+		int[] copy = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			copy[c] = clamp(table[c]);
+		}
+		return copy;
+	}
+
+	private static int clamp(int value)
+	{
+		return Math.max(0, Math.min(255, value));
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof Curves)
+		{
+			Curves other = (Curves) object;
+			return luminance == other.luminance
+					&& Arrays.equals(red, other.red)
+					&& Arrays.equals(green, other.green)
+					&& Arrays.equals(blue, other.blue)
+					&& cancellationToken == other.cancellationToken;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Util.hashCode(cancellationToken, Util.hashCode(ID.hashCode(),
+				Util.hashCode(luminance,
+						Util.hashCode(Arrays.hashCode(red),
+								Util.hashCode(Arrays.hashCode(green),
+										Util.hashCode(Arrays.hashCode(blue)))))));
+	}
+
+	@Override
+	public void updateDiskCacheKey(MessageDigest messageDigest)
+	{
+		byte[] tables = new byte[3 * 256 + 1];
+		for(int c = 0; c < 256; c++)
+		{
+			tables[c] = (byte)red[c];
+			tables[256 + c] = (byte)green[c];
+			tables[512 + c] = (byte)blue[c];
+		}
+		tables[768] = (byte)(luminance ? 1 : 0);
+
+		messageDigest.update(ID_BYTES);
+		CacheKeys.updateVersion(messageDigest, VERSION);
+		messageDigest.update(tables);
+	}
+}
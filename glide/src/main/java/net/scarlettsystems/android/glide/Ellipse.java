@@ -4,11 +4,6 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.Rect;
-import android.graphics.RectF;
 import android.os.Build;
 import android.support.annotation.ColorInt;
 import android.support.annotation.ColorRes;
@@ -27,14 +22,18 @@ import java.util.ArrayList;
 /**
  * Ellipse.java
  * Crops the image by a configurable ellipse shape.
+ * This is the ellipse configuration of Shape, and shares its cached masks.
  *
  * @author Shane Scarlett
  * @version 1.0.0
+ * @see Shape
  */
-public class Ellipse extends BitmapTransformation
+public class Ellipse extends BitmapTransformation implements StripeTransformation, ResolutionIndependent
 {
 	private static final String ID = "net.scarlettsystems.android.transformations.glide.Ellipse";
 	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 4;
 	private float xDiameter, yDiameter, angle;
 	private boolean isFraction, isCircle;
 	private int colour;
@@ -129,8 +128,8 @@ public class Ellipse extends BitmapTransformation
 	{
 		this.isCircle = false;
 		this.isFraction = false;
-		this.xDiameter = Math.max(0, xDiameter);
-		this.yDiameter = Math.max(0, yDiameter);
+		this.xDiameter = Math.max(0, x);
+		this.yDiameter = Math.max(0, y);
 		return this;
 	}
 
@@ -229,48 +228,57 @@ public class Ellipse extends BitmapTransformation
 	@Override
 	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
 	{
-		int pivotX = source.getWidth() / 2;
-		int pivotY = source.getHeight() / 2;
-		resolveDiameters(source.getWidth(), source.getHeight());
+		long start = System.nanoTime();
+		Bitmap bitmap = Shape.composite(pool, source, getMask(source.getWidth(), source.getHeight()), colour);
+		TransformationMetrics.record("Ellipse", "mask", source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return bitmap;
+	}
 
-		float ellipseLeft = (source.getWidth() - xDiameter) / 2;
-		float ellipseTop = (source.getHeight() - yDiameter) / 2;
-		float ellipseRight = ellipseLeft + xDiameter;
-		float ellipseBottom = ellipseTop + yDiameter;
-		RectF ellipseBounds = new RectF(ellipseLeft, ellipseTop, ellipseRight, ellipseBottom);
+	@Override
+	public boolean isResolutionIndependent()
+	{
+		return isFraction;
+	}
 
-		Bitmap bitmap = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
-		Rect bitmapBounds = new Rect(0,0, source.getWidth(), source.getHeight());
-		Paint paint = new Paint();
-		paint.setColor(Color.WHITE);
-		paint.setAntiAlias(true);
-		paint.setFilterBitmap(true);
-		Canvas canvas = new Canvas(bitmap);
-		if(!isCircle)
-			canvas.rotate(-angle, pivotX, pivotY);
-		canvas.drawOval(ellipseBounds, paint);
-		if(!isCircle)
-			canvas.rotate(angle, pivotX, pivotY);
-		paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-		canvas.drawBitmap(source, null, bitmapBounds, paint);
-		canvas.drawColor(colour, PorterDuff.Mode.DST_OVER);
-		return bitmap;
+	@Override
+	public void getSourceRows(int width, int height, int top, int bottom, int[] rows)
+	{
+		rows[0] = top;
+		rows[1] = bottom;
 	}
 
-	private void resolveDiameters(int width, int height)
+	@Override
+	public void drawStripe(Canvas canvas, Bitmap input, int inputTop, int inputRows, int width, int height)
+	{
+		Shape.composite(canvas, input, inputTop, getMask(width, height), colour);
+	}
+
+	/**
+	 * Returns the cached mask of this ellipse for a source of the given dimensions.
+	 */
+	private Bitmap getMask(int width, int height)
+	{
+		float[] diameters = resolveDiameters(width, height);
+		return Shape.getMask(Shape.ELLIPSE, width, height,
+				diameters[0], diameters[1], 0f, 0f, isCircle ? 0f : angle);
+	}
+
+	/**
+	 * Returns the diameters in pixels for a source of the given dimensions,
+	 * leaving the configuration untouched so that it applies to every source.
+	 */
+	private float[] resolveDiameters(int width, int height)
 	{
-		if(!isFraction){return;}
+		if(!isFraction){return new float[]{xDiameter, yDiameter};}
 
 		if(isCircle)
 		{
 			int dia = Math.min(width, height);
-			xDiameter *= dia;
-			yDiameter *= dia;
+			return new float[]{xDiameter * dia, yDiameter * dia};
 		}
 		else
 		{
-			xDiameter *= width;
-			yDiameter *= height;
+			return new float[]{xDiameter * width, yDiameter * height};
 		}
 	}
 
@@ -281,10 +289,11 @@ public class Ellipse extends BitmapTransformation
 		{
 			Ellipse other = (Ellipse) object;
 			return xDiameter == other.xDiameter
-					&& yDiameter == other.xDiameter
+					&& yDiameter == other.yDiameter
 					&& angle == other.angle
 					&& colour == other.colour
-					&& isCircle == other.isCircle;
+					&& isCircle == other.isCircle
+					&& isFraction == other.isFraction;
 		}
 		return false;
 	}
@@ -297,7 +306,8 @@ public class Ellipse extends BitmapTransformation
 						Util.hashCode(yDiameter,
 								Util.hashCode(angle,
 										Util.hashCode(colour,
-												Util.hashCode(isCircle))))));
+												Util.hashCode(isCircle,
+														Util.hashCode(isFraction)))))));
 	}
 
 	@Override
@@ -307,13 +317,17 @@ public class Ellipse extends BitmapTransformation
 
 		char boolCircle;
 		if(isCircle){boolCircle = 't';}else{boolCircle = 'f';}
+		char boolFraction;
+		if(isFraction){boolFraction = 't';}else{boolFraction = 'f';}
 
 		messages.add(ID_BYTES);
+		CacheKeys.addVersion(messages, VERSION);
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(xDiameter).array());
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(yDiameter).array());
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(angle).array());
 		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(colour).array());
 		messages.add(ByteBuffer.allocate(Character.SIZE/Byte.SIZE).putChar(boolCircle).array());
+		messages.add(ByteBuffer.allocate(Character.SIZE/Byte.SIZE).putChar(boolFraction).array());
 
 		for(int c = 0; c < messages.size(); c++)
 		{
@@ -2,6 +2,7 @@ package net.scarlettsystems.android.glide;
 
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.support.annotation.IntDef;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
@@ -20,10 +21,12 @@ import java.util.ArrayList;
  * @author Shane Scarlett
  * @version 1.0.0
  */
-public class Flip extends BitmapTransformation
+public class Flip extends BitmapTransformation implements StripeTransformation, ResolutionIndependent
 {
 	private static final String ID = "net.scarlettsystems.android.transformations.glide.Flip";
 	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 1;
 	private float xScale, yScale;
 
 	/**
@@ -72,19 +75,60 @@ public class Flip extends BitmapTransformation
 	@Override
 	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
 	{
-		Bitmap bitmap = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
-		Canvas canvas = new Canvas(bitmap);
-		canvas.scale(xScale, yScale, source.getWidth()/2, source.getHeight()/2);
-		canvas.drawBitmap(source, 0, 0, null);
+		long start = System.nanoTime();
+		Bitmap bitmap;
+		if(HardwareBitmaps.isHardware(source))
+		{
+			bitmap = HardwareBitmaps.draw(pool, source, this);
+		}
+		else
+		{
+			bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+			Canvas canvas = new Canvas(bitmap);
+			drawStripe(canvas, source, 0, source.getHeight(), source.getWidth(), source.getHeight());
+		}
+		TransformationMetrics.record("Flip", "canvas", source.getWidth(), source.getHeight(), System.nanoTime() - start);
 		return bitmap;
 	}
 
+	@Override
+	public boolean isResolutionIndependent()
+	{
+		return true;
+	}
+
+	@Override
+	public void getSourceRows(int width, int height, int top, int bottom, int[] rows)
+	{
+		if(yScale < 0)
+		{
+			//Rows are mirrored about the centre, as in drawStripe
+			int pivot = 2 * (height / 2);
+			rows[0] = pivot - bottom;
+			rows[1] = pivot - top;
+		}
+		else
+		{
+			rows[0] = top;
+			rows[1] = bottom;
+		}
+	}
+
+	@Override
+	public void drawStripe(Canvas canvas, Bitmap input, int inputTop, int inputRows, int width, int height)
+	{
+		canvas.scale(xScale, yScale, width/2, height/2);
+		canvas.drawBitmap(input, new Rect(0, 0, width, inputRows), new Rect(0, inputTop, width, inputTop + inputRows), null);
+	}
+
 	@Override
 	public boolean equals(Object object)
 	{
-		if (object instanceof Greyscale)
+		if (object instanceof Flip)
 		{
-			return true;
+			Flip other = (Flip) object;
+			return xScale == other.xScale
+					&& yScale == other.yScale;
 		}
 		return false;
 	}
@@ -103,6 +147,7 @@ public class Flip extends BitmapTransformation
 		ArrayList<byte[]> messages = new ArrayList<>();
 
 		messages.add(ID_BYTES);
+		CacheKeys.addVersion(messages, VERSION);
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(xScale).array());
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(yScale).array());
 
@@ -5,10 +5,6 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.support.v8.renderscript.Allocation;
-import android.support.v8.renderscript.Element;
-import android.support.v8.renderscript.RenderScript;
-import android.support.v8.renderscript.ScriptIntrinsicBlur;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
@@ -21,17 +17,25 @@ import java.util.ArrayList;
 /**
  * GaussianBlur.java
  * Blurs the image using RenderScript's ScriptIntrinsicBlur.
+ * For blurs whose radius changes every frame, see BlurPyramid.
  *
  * @author Shane Scarlett
  * @version 1.0.0
+ * @see BlurPyramid
  */
-public class GaussianBlur extends BitmapTransformation
+public class GaussianBlur extends BitmapTransformation implements HeavyTransformation, ScalableTransformation
 {
 	private static final String ID = "net.scarlettsystems.android.transformations.glide.GaussianBlur";
 	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 1;
 	private Context mContext;
 	private float blurRadius;
-	private static final float RENDERSCRIPT_MAX_BLUR_RADIUS = 25.0f;
+	private CancellationToken cancellationToken;
+	private Rect[] regions;
+	private BlurEngine.FrameBlur frameBlur;
+	private final Paint scalePaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+	private static final float RENDERSCRIPT_MAX_BLUR_RADIUS = BlurEngine.RENDERSCRIPT_MAX_BLUR_RADIUS;
 
 	/**
 	 * Default constructor. Specified radius is used to blur the image.
@@ -41,6 +45,9 @@ public class GaussianBlur extends BitmapTransformation
 	 * blur, and re-inflate the image to the output dimensions, simulating blur radii
 	 * larger than 25.0.
 	 *
+	 * Under memory pressure, or when the full blur exceeds the MemoryPlanner
+	 * budget, the blur is computed in stripes, with the same result.
+	 *
 	 * @param context current context
 	 * @param blurRadius blur radius in pixels, can be fractional
 	 */
@@ -48,43 +55,218 @@ public class GaussianBlur extends BitmapTransformation
 	{
 		mContext = context;
 		this.blurRadius = Math.max(0f, blurRadius);
+		this.frameBlur = new BlurEngine.FrameBlur(context);
+	}
+
+	float getBlurRadius()
+	{
+		return blurRadius;
+	}
+
+	/**
+	 * Sets a token that stops the blur early once cancelled, for example when
+	 * the view it was requested for is recycled.
+	 * Loads with different tokens are not merged by Glide, so cancelling one
+	 * never aborts another.
+	 *
+	 * @param token cancellation token, or null for none
+	 * @return returns self
+	 */
+	public GaussianBlur setCancellationToken(CancellationToken token)
+	{
+		this.cancellationToken = token;
+		return this;
+	}
+
+	/**
+	 * Limits the blur to the given regions of the source image, in source
+	 * pixels. Pixels outside the regions are copied through unchanged, and
+	 * only the regions plus a margin of the blur radius are processed.
+	 * Calling with no regions blurs the whole image again.
+	 *
+	 * @param regions regions to blur
+	 * @return returns self
+	 */
+	public GaussianBlur setRegions(Rect... regions)
+	{
+		this.regions = Regions.copyOf(regions);
+		return this;
+	}
+
+	/**
+	 * Chooses the blur strategy for a source of the given dimensions.
+	 * Memory pressure only changes how scratch memory is used, never the
+	 * output, which Glide may keep in its disk cache long after pressure eases.
+	 */
+	MemoryPlanner.Plan plan(int width, int height)
+	{
+		float scaleFactor = Math.min(1f, RENDERSCRIPT_MAX_BLUR_RADIUS / blurRadius);
+		if(scaleFactor < 1f)
+		{
+			return MemoryPlanner.choose(MemoryPlanner.downsampledBlur(width, height, scaleFactor, false));
+		}
+		if(MemoryPressure.getLevel() != MemoryPressure.LEVEL_NONE)
+		{
+			return MemoryPlanner.choose(MemoryPlanner.tiledBlur(width, height, blurRadius));
+		}
+		return MemoryPlanner.choose(
+				MemoryPlanner.inPlaceBlur(width, height),
+				MemoryPlanner.tiledBlur(width, height, blurRadius));
+	}
+
+	@Override
+	public GaussianBlur scaledBy(float factor)
+	{
+		GaussianBlur scaled = new GaussianBlur(mContext, blurRadius * factor)
+				.setCancellationToken(cancellationToken);
+		scaled.regions = Regions.scale(regions, factor);
+		return scaled;
+	}
+
+	@Override
+	public boolean isHeavy(int width, int height)
+	{
+		return (long)width * (long)height >= Offloaded.HEAVY_PIXEL_COUNT;
 	}
 
 	@Override
 	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
 	{
-		if(blurRadius <= RENDERSCRIPT_MAX_BLUR_RADIUS)
+		if(HardwareBitmaps.isHardware(source))
+		{
+			//RenderScript cannot read hardware bitmaps, so blur one software copy
+			Bitmap copy = HardwareBitmaps.softwareCopy(source);
+			Bitmap bitmap = null;
+			try
+			{
+				bitmap = transform(pool, copy, outWidth, outHeight);
+				return bitmap;
+			}
+			finally
+			{
+				if(bitmap != copy)
+				{
+					pool.put(copy);
+				}
+			}
+		}
+		long start = System.nanoTime();
+		CancellationToken.throwIfCancelled(cancellationToken);
+		if(regions != null)
 		{
-			blur(source, blurRadius);
+			return blurRegions(pool, source, start);
 		}
-		else
+		MemoryPlanner.Plan plan = plan(source.getWidth(), source.getHeight());
+		Bitmap result = source;
+		switch(plan.getStrategy())
 		{
-			float scaleFactor = (RENDERSCRIPT_MAX_BLUR_RADIUS / blurRadius);
-			int scaledWidth = Math.max(1, Math.round((float) source.getWidth() * scaleFactor));
-			int scaledHeight = Math.max(1, Math.round((float) source.getHeight() * scaleFactor));
-			Bitmap scaled = Bitmap.createScaledBitmap(source, scaledWidth, scaledHeight, true);
-			blur(scaled, RENDERSCRIPT_MAX_BLUR_RADIUS);
+			case MemoryPlanner.STRATEGY_TILED:
+				//Blur stripe by stripe, avoiding full-size RenderScript allocations
+				result = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+				try
+				{
+					BlurEngine.blurTiled(mContext, pool, source, result, blurRadius, cancellationToken, null);
+				}
+				catch(TransformationCancelledException e)
+				{
+					pool.put(result);
+					throw e;
+				}
+				break;
+			case MemoryPlanner.STRATEGY_DOWNSAMPLED:
+				blurDownsampled(pool, source, plan.getScale());
+				break;
+			default:
+				blur(source, blurRadius);
+				break;
+		}
+		TransformationMetrics.record("GaussianBlur", "renderscript", plan,
+				source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Blurs only the configured regions into a pooled copy of the source.
+	 * Each region is blurred together with a margin of surrounding pixels,
+	 * so that its edges match a full blur.
+	 */
+	private Bitmap blurRegions(BitmapPool pool, Bitmap source, long start)
+	{
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int halo = (int)Math.ceil(blurRadius);
+		Rect[] clipped = Regions.clip(regions, width, height);
+		float scaleFactor = Math.min(1f, RENDERSCRIPT_MAX_BLUR_RADIUS / blurRadius);
+		Bitmap bitmap = pool.get(width, height, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(bitmap);
+		canvas.drawBitmap(source, 0, 0, null);
+		try
+		{
+			for(Rect region : clipped)
+			{
+				CancellationToken.throwIfCancelled(cancellationToken);
+				Rect area = Regions.expand(region, halo, width, height);
+				Bitmap scratch = pool.get(area.width(), area.height(), Bitmap.Config.ARGB_8888);
+				try
+				{
+					new Canvas(scratch).drawBitmap(source, area, new Rect(0, 0, area.width(), area.height()), null);
+					if(scaleFactor < 1f)
+					{
+						blurDownsampled(pool, scratch, scaleFactor);
+					}
+					else
+					{
+						blur(scratch, blurRadius);
+					}
+					Rect inner = new Rect(region);
+					inner.offset(-area.left, -area.top);
+					canvas.drawBitmap(scratch, inner, region, null);
+				}
+				finally
+				{
+					pool.put(scratch);
+				}
+			}
+		}
+		catch(TransformationCancelledException e)
+		{
+			pool.put(bitmap);
+			throw e;
+		}
+		MemoryPlanner.Plan plan = new MemoryPlanner.Plan(MemoryPlanner.STRATEGY_FULL,
+				MemoryPlanner.argbBytes(width, height) + Regions.largestScratchBytes(clipped, halo, width, height), 1f);
+		TransformationMetrics.record("GaussianBlur", "renderscript", plan, width, height, System.nanoTime() - start);
+		return bitmap;
+	}
+
+	/**
+	 * Blurs a downscaled copy and re-inflates it over the source, simulating
+	 * the full radius at a fraction of the cost.
+	 */
+	private void blurDownsampled(BitmapPool pool, Bitmap source, float scaleFactor)
+	{
+		int scaledWidth = Math.max(1, Math.round((float) source.getWidth() * scaleFactor));
+		int scaledHeight = Math.max(1, Math.round((float) source.getHeight() * scaleFactor));
+		Bitmap scaled = pool.get(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
+		try
+		{
+			new Canvas(scaled).drawBitmap(source, null, new Rect(0, 0, scaledWidth, scaledHeight), scalePaint);
+			CancellationToken.throwIfCancelled(cancellationToken);
+			blur(scaled, blurRadius * scaleFactor);
+			CancellationToken.throwIfCancelled(cancellationToken);
 			Canvas canvas = new Canvas(source);
 			Rect bitmapBounds = new Rect(0, 0, source.getWidth(), source.getHeight());
-			Paint paint = new Paint();
-			paint.setAntiAlias(true);
-			paint.setFilterBitmap(true);
-			canvas.drawBitmap(scaled, null, bitmapBounds, paint);
+			canvas.drawBitmap(scaled, null, bitmapBounds, scalePaint);
+		}
+		finally
+		{
+			pool.put(scaled);
 		}
-		return source;
-
 	}
 
 	private void blur(Bitmap bitmap, float radius)
 	{
-		final RenderScript rs = RenderScript.create(mContext);
-		final Allocation input = Allocation.createFromBitmap( rs, bitmap, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT );
-		final Allocation output = Allocation.createTyped( rs, input.getType() );
-		final ScriptIntrinsicBlur script = ScriptIntrinsicBlur.create( rs, Element.U8_4( rs ) );
-		script.setRadius( radius );
-		script.setInput( input );
-		script.forEach( output );
-		output.copyTo( bitmap );
+		frameBlur.blur(bitmap, bitmap, radius);
 	}
 
 	@Override
@@ -93,7 +275,9 @@ public class GaussianBlur extends BitmapTransformation
 		if (object instanceof GaussianBlur)
 		{
 			GaussianBlur other = (GaussianBlur) object;
-			return blurRadius == other.blurRadius;
+			return blurRadius == other.blurRadius
+					&& Regions.equals(regions, other.regions)
+					&& cancellationToken == other.cancellationToken;
 		}
 		return false;
 	}
@@ -101,8 +285,9 @@ public class GaussianBlur extends BitmapTransformation
 	@Override
 	public int hashCode()
 	{
-		return Util.hashCode(ID.hashCode(),
-				Util.hashCode(blurRadius));
+		return Util.hashCode(cancellationToken, Util.hashCode(ID.hashCode(),
+				Util.hashCode(blurRadius,
+						Regions.hashCode(regions))));
 	}
 
 	@Override
@@ -111,7 +296,9 @@ public class GaussianBlur extends BitmapTransformation
 		ArrayList<byte[]> messages = new ArrayList<>();
 
 		messages.add(ID_BYTES);
+		CacheKeys.addVersion(messages, VERSION);
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(blurRadius).array());
+		Regions.addTo(messages, regions);
 
 		for(int c = 0; c < messages.size(); c++)
 		{
@@ -6,6 +6,7 @@ import android.graphics.Canvas;
 import android.graphics.ColorMatrix;
 import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
+import android.graphics.Rect;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
@@ -15,36 +16,70 @@ import java.security.MessageDigest;
 
 /**
  * Applies a greyscale effect to the image.
+ * Equivalent to Curves.greyscale(), but drawn through a colour matrix.
  *
  * @author Shane Scarlett
  * @version 1.0.0
+ * @see Curves
  */
-public class Greyscale extends BitmapTransformation
+public class Greyscale extends BitmapTransformation implements StripeTransformation, ResolutionIndependent
 {
 	private static final String ID = "net.scarlettsystems.android.transformations.glide.Greyscale";
 	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 1;
+	private final Paint paint = new Paint();
 
 	/**
 	 * Default constructor. No other configuration required.
 	 *
 	 */
-	public Greyscale(){}
-
-	@Override
-	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	public Greyscale()
 	{
-		Bitmap bitmap = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
-		//Create Image Paint
-		Paint paint = new Paint();
 		ColorMatrix greyMatrix = new ColorMatrix();
 		greyMatrix.setSaturation(0.0f);
 		paint.setColorFilter(new ColorMatrixColorFilter(greyMatrix));
-		//Draw to Canvas
-		Canvas canvas = new Canvas(bitmap);
-		canvas.drawBitmap(source, 0, 0, paint);
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		long start = System.nanoTime();
+		Bitmap bitmap;
+		if(HardwareBitmaps.isHardware(source))
+		{
+			bitmap = HardwareBitmaps.draw(pool, source, this);
+		}
+		else
+		{
+			bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+			//Draw to Canvas
+			Canvas canvas = new Canvas(bitmap);
+			drawStripe(canvas, source, 0, source.getHeight(), source.getWidth(), source.getHeight());
+		}
+		TransformationMetrics.record("Greyscale", "canvas", source.getWidth(), source.getHeight(), System.nanoTime() - start);
 		return bitmap;
 	}
 
+	@Override
+	public boolean isResolutionIndependent()
+	{
+		return true;
+	}
+
+	@Override
+	public void getSourceRows(int width, int height, int top, int bottom, int[] rows)
+	{
+		rows[0] = top;
+		rows[1] = bottom;
+	}
+
+	@Override
+	public void drawStripe(Canvas canvas, Bitmap input, int inputTop, int inputRows, int width, int height)
+	{
+		canvas.drawBitmap(input, new Rect(0, 0, width, inputRows), new Rect(0, inputTop, width, inputTop + inputRows), paint);
+	}
+
 	@Override
 	public boolean equals(Object object)
 	{
@@ -65,5 +100,6 @@ public class Greyscale extends BitmapTransformation
 	public void updateDiskCacheKey(MessageDigest messageDigest)
 	{
 		messageDigest.update(ID_BYTES);
+		CacheKeys.updateVersion(messageDigest, VERSION);
 	}
 }
@@ -0,0 +1,105 @@
+package net.scarlettsystems.android.glide;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.os.Build;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+/**
+ * HardwareBitmaps.java
+ * Handles sources decoded as Bitmap.Config.HARDWARE, which Glide may use on
+ * API 26 and above. Their pixels live only in graphics memory, so they can be
+ * neither read nor drawn to a software canvas.
+ * <p>
+ * Transformations that only draw are recorded into a Picture and rendered by
+ * the GPU into a new hardware bitmap on API 28 and above, without a software
+ * copy. Elsewhere, and for transformations that read pixels, the source is
+ * copied to software once and the copy is returned to the pool afterwards.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+final class HardwareBitmaps
+{
+	private HardwareBitmaps(){}
+
+	/**
+	 * Draws a transformation's output from its source onto a canvas the size of the source.
+	 */
+	interface Drawing
+	{
+		void draw(Canvas canvas, Bitmap source);
+	}
+
+	/**
+	 * Returns whether the bitmap is a hardware bitmap.
+	 */
+	static boolean isHardware(Bitmap bitmap)
+	{
+		return Build.VERSION.SDK_INT >= 26 && bitmap.getConfig() == Bitmap.Config.HARDWARE;
+	}
+
+	/**
+	 * Returns whether drawings of hardware bitmaps can be recorded and
+	 * rendered into a new hardware bitmap, which is possible from API 28.
+	 */
+	static boolean canRecord()
+	{
+		return Build.VERSION.SDK_INT >= 28;
+	}
+
+	/**
+	 * Returns a mutable software copy of a hardware bitmap, to be returned to
+	 * the pool by the caller once it is no longer needed.
+	 */
+	static Bitmap softwareCopy(Bitmap source)
+	{
+		return source.copy(Bitmap.Config.ARGB_8888, true);
+	}
+
+	/**
+	 * Draws the output of a transformation from a hardware source. On API 28
+	 * and above the drawing is recorded and rendered into a hardware bitmap,
+	 * otherwise it is drawn from a software copy into a pooled output.
+	 */
+	static Bitmap draw(BitmapPool pool, Bitmap source, Drawing drawing)
+	{
+		int width = source.getWidth();
+		int height = source.getHeight();
+		if(canRecord())
+		{
+			Picture picture = new Picture();
+			drawing.draw(picture.beginRecording(width, height), source);
+			picture.endRecording();
+			return Bitmap.createBitmap(picture, width, height, Bitmap.Config.HARDWARE);
+		}
+		Bitmap copy = softwareCopy(source);
+		try
+		{
+			Bitmap bitmap = pool.get(width, height, Bitmap.Config.ARGB_8888);
+			drawing.draw(new Canvas(bitmap), copy);
+			return bitmap;
+		}
+		finally
+		{
+			pool.put(copy);
+		}
+	}
+
+	/**
+	 * Draws the whole image through a stripe transformation from a hardware source, as in draw().
+	 */
+	static Bitmap draw(BitmapPool pool, Bitmap source, final StripeTransformation transformation)
+	{
+		return draw(pool, source, new Drawing()
+		{
+			@Override
+			public void draw(Canvas canvas, Bitmap input)
+			{
+				transformation.drawStripe(canvas, input, 0, input.getHeight(), input.getWidth(), input.getHeight());
+			}
+		});
+	}
+}
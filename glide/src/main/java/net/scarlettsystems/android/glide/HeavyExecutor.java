@@ -0,0 +1,210 @@
+package net.scarlettsystems.android.glide;
+
+import android.os.Process;
+
+import com.bumptech.glide.Priority;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HeavyExecutor.java
+ * A bounded, priority ordered executor for heavy transformations, such as
+ * large blurs and shadows, kept apart from Glide's source executor so that
+ * cheap decodes are not held up behind them. Tasks of higher Glide Priority
+ * run first, and tasks of equal priority run in submission order.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see Offloaded
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class HeavyExecutor
+{
+	private static int maxThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+	private static HeavyExecutor instance;
+
+	private final ThreadPoolExecutor executor;
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+	private HeavyExecutor(int threads)
+	{
+		executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<Runnable>(), new WorkerFactory());
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Sets the number of heavy transformations that may run at once.
+	 * Must be called before the executor is first used.
+	 * Defaults to half the number of available processors.
+	 *
+	 * @param threads maximum concurrent heavy transformations
+	 */
+	public static synchronized void setMaxThreads(int threads)
+	{
+		if(instance != null)
+		{
+			throw new IllegalStateException("HeavyExecutor is already in use");
+		}
+		maxThreads = Math.max(1, threads);
+	}
+
+	/**
+	 * Returns the shared executor, creating it if required.
+	 *
+	 * @return shared executor
+	 */
+	public static synchronized HeavyExecutor get()
+	{
+		if(instance == null)
+		{
+			instance = new HeavyExecutor(maxThreads);
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the number of tasks waiting for a thread.
+	 *
+	 * @return queue depth
+	 */
+	public int getQueueDepth()
+	{
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Returns the largest queue depth observed since the last reset.
+	 *
+	 * @return maximum queue depth
+	 */
+	public int getMaxQueueDepth()
+	{
+		return maxQueueDepth.get();
+	}
+
+	public void resetMaxQueueDepth()
+	{
+		maxQueueDepth.set(0);
+	}
+
+	/**
+	 * Returns the number of tasks currently running.
+	 *
+	 * @return active count
+	 */
+	public int getActiveCount()
+	{
+		return executor.getActiveCount();
+	}
+
+	public long getCompletedCount()
+	{
+		return executor.getCompletedTaskCount();
+	}
+
+	/**
+	 * Runs the task on the executor and waits for its result. If the waiting
+	 * thread is interrupted the task is cancelled.
+	 *
+	 * @param task task to run
+	 * @param priority priority relative to other heavy tasks
+	 * @return result of the task
+	 * @throws TransformationCancelledException if interrupted or cancelled
+	 */
+	public <T> T run(Callable<T> task, Priority priority)
+	{
+		final CancellationToken token = CancellationToken.getCurrent();
+		PriorityTask<T> future = new PriorityTask<>(task, token, priority, sequence.getAndIncrement());
+		executor.execute(future);
+		int depth = getQueueDepth();
+		int max;
+		while(depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)){}
+		try
+		{
+			return future.get();
+		}
+		catch(InterruptedException e)
+		{
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new TransformationCancelledException();
+		}
+		catch(ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException){throw (RuntimeException)cause;}
+			if(cause instanceof Error){throw (Error)cause;}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private static class PriorityTask<T> extends FutureTask<T> implements Comparable<PriorityTask<?>>
+	{
+		private final int priority;
+		private final long order;
+
+		PriorityTask(final Callable<T> task, final CancellationToken token, Priority priority, long order)
+		{
+			super(new Callable<T>()
+			{
+				@Override
+				public T call() throws Exception
+				{
+					//Carry the caller's token over to the worker thread
+					CancellationToken.setCurrent(token);
+					try
+					{
+						return task.call();
+					}
+					finally
+					{
+						CancellationToken.setCurrent(null);
+					}
+				}
+			});
+			this.priority = priority.ordinal();
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(PriorityTask<?> other)
+		{
+			if(priority != other.priority)
+			{
+				return priority < other.priority ? -1 : 1;
+			}
+			return order < other.order ? -1 : (order == other.order ? 0 : 1);
+		}
+	}
+
+	private static class WorkerFactory implements ThreadFactory
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			Thread thread = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE);
+					runnable.run();
+				}
+			}, "heavy-transformation-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package net.scarlettsystems.android.glide;
+
+/**
+ * HeavyTransformation.java
+ * Marks transformations that can take long enough to hold up other image
+ * loads, so that Offloaded runs them on the bounded HeavyExecutor.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see Offloaded
+ */
+public interface HeavyTransformation
+{
+	/**
+	 * Returns whether transforming a source of the given dimensions is heavy.
+	 *
+	 * @param width source width in pixels
+	 * @param height source height in pixels
+	 * @return true if the transformation should be offloaded
+	 */
+	boolean isHeavy(int width, int height);
+}
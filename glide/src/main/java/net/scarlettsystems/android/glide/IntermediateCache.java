@@ -0,0 +1,189 @@
+package net.scarlettsystems.android.glide;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.v4.util.LruCache;
+
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * IntermediateCache.java
+ * A process wide, opt in memory cache of intermediate results, keyed by a
+ * source key and the chain of transformations applied so far. It lets
+ * different chains that share a prefix, such as GaussianBlur and
+ * GaussianBlur followed by Tint, compute the shared part only once.
+ * Entries are only added by CachedChain.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see CachedChain
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class IntermediateCache
+{
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final Cache CACHE = new Cache((int)Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16));
+
+	private IntermediateCache(){}
+
+	/**
+	 * Removes all cached intermediate results.
+	 */
+	public static void clear()
+	{
+		CACHE.evictAll();
+	}
+
+	/**
+	 * Sets the maximum number of bytes used by cached intermediate results.
+	 * Defaults to one sixteenth of the maximum heap size.
+	 *
+	 * @param bytes cache size in bytes
+	 */
+	public static void setCacheSize(int bytes)
+	{
+		CACHE.resize(Math.max(1, bytes));
+	}
+
+	/**
+	 * Returns a pooled copy of the result cached under the key, or null if absent.
+	 * The copy belongs to the caller, while the cached bitmap is never handed out.
+	 */
+	static Bitmap get(BitmapPool pool, String key)
+	{
+		Bitmap cached = CACHE.get(key);
+		if(cached == null){return null;}
+		Bitmap copy = pool.get(cached.getWidth(), cached.getHeight(), Bitmap.Config.ARGB_8888);
+		new Canvas(copy).drawBitmap(cached, 0, 0, null);
+		return copy;
+	}
+
+	/**
+	 * Returns a pooled copy of the result cached under the key, downsampled to
+	 * the given dimensions, or null if absent, smaller than the dimensions or
+	 * of a different aspect ratio.
+	 */
+	static Bitmap getScaled(BitmapPool pool, String key, int width, int height)
+	{
+		Bitmap cached = CACHE.get(key);
+		if(cached == null
+				|| cached.getWidth() < width
+				|| cached.getHeight() < height
+				|| Math.abs((long)cached.getWidth() * height - (long)cached.getHeight() * width) > Math.max(cached.getWidth(), cached.getHeight()))
+		{
+			return null;
+		}
+		Bitmap copy = pool.get(width, height, Bitmap.Config.ARGB_8888);
+		Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+		new Canvas(copy).drawBitmap(cached, null, new Rect(0, 0, width, height), paint);
+		return copy;
+	}
+
+	/**
+	 * Caches an immutable copy of the result under the key, unless a larger
+	 * result is already cached there.
+	 */
+	static void putIfLarger(String key, Bitmap result)
+	{
+		Bitmap cached = CACHE.get(key);
+		if(cached == null || (long)cached.getWidth() * cached.getHeight() < (long)result.getWidth() * result.getHeight())
+		{
+			put(key, result);
+		}
+	}
+
+	/**
+	 * Caches an immutable copy of the result under the key.
+	 */
+	static void put(String key, Bitmap result)
+	{
+		Bitmap copy = result.copy(Bitmap.Config.ARGB_8888, false);
+		if(copy != null)
+		{
+			CACHE.put(key, copy);
+		}
+	}
+
+	/**
+	 * Returns the cache key for the first count transformations applied to a
+	 * source decoded at the given size for the given target size: the source
+	 * key and sizes followed by a digest of their disk cache keys. The same
+	 * source is decoded at different sizes for different targets, so results
+	 * are only shared between loads of the same size.
+	 */
+	static String keyOf(String sourceKey, int width, int height, int outWidth, int outHeight,
+						Transformation<Bitmap>[] transformations, int count)
+	{
+		MessageDigest digest = newDigest();
+		for(int c = 0; c < count; c++)
+		{
+			transformations[c].updateDiskCacheKey(digest);
+		}
+		return sourceKey + '@' + width + 'x' + height + '>' + outWidth + 'x' + outHeight + '/' + toHex(digest.digest());
+	}
+
+	/**
+	 * Returns the cache key for the transformation applied to the source.
+	 */
+	static String keyOf(String sourceKey, Transformation<Bitmap> transformation)
+	{
+		MessageDigest digest = newDigest();
+		transformation.updateDiskCacheKey(digest);
+		return sourceKey + '/' + toHex(digest.digest());
+	}
+
+	/**
+	 * Returns the cache key for the transformation applied to a source of the
+	 * given size for the given target size, for size-dependent transformations.
+	 */
+	static String keyOf(String sourceKey, int width, int height, int outWidth, int outHeight,
+						Transformation<Bitmap> transformation)
+	{
+		MessageDigest digest = newDigest();
+		transformation.updateDiskCacheKey(digest);
+		return sourceKey + '@' + width + 'x' + height + '>' + outWidth + 'x' + outHeight + '/' + toHex(digest.digest());
+	}
+
+	static MessageDigest newDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String toHex(byte[] bytes)
+	{
+		char[] chars = new char[bytes.length * 2];
+		for(int c = 0; c < bytes.length; c++)
+		{
+			chars[c * 2] = HEX[(bytes[c] >> 4) & 0xF];
+			chars[c * 2 + 1] = HEX[bytes[c] & 0xF];
+		}
+		return new String(chars);
+	}
+
+	private static class Cache extends LruCache<String, Bitmap>
+	{
+		Cache(int maxBytes)
+		{
+			super(maxBytes);
+		}
+
+		@Override
+		protected int sizeOf(String key, Bitmap value)
+		{
+			return value.getRowBytes() * value.getHeight();
+		}
+	}
+}
@@ -5,6 +5,7 @@ import android.graphics.Canvas;
 import android.graphics.ColorMatrix;
 import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
+import android.graphics.Rect;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
@@ -14,43 +15,77 @@ import java.security.MessageDigest;
 
 /**
  * Inverts the colours of the image.
+ * Equivalent to Curves.inverse(), but drawn through a colour matrix.
  *
  * @author Shane Scarlett
  * @version 1.0.0
+ * @see Curves
  */
-public class Inverse extends BitmapTransformation
+public class Inverse extends BitmapTransformation implements StripeTransformation, ResolutionIndependent
 {
 	private static final String ID = "net.scarlettsystems.android.transformations.glide.Inverse";
 	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 1;
+	private final Paint paint = new Paint();
 
 	/**
 	 * Default constructor. No other configuration required.
 	 *
 	 */
-	public Inverse(){}
-
-	@Override
-	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	public Inverse()
 	{
-		Bitmap bitmap = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
-		//Create Image Paint
-		Paint paint = new Paint();
 		ColorMatrix matrix = new ColorMatrix(new float[]{
 				-1.0f, 0.0f, 0.0f, 0.0f, 255f,
 				0.0f, -1.0f, 0.0f, 0.0f, 255f,
 				0.0f, 0.0f, -1.0f, 0.0f, 255f,
 				0.0f, 0.0f, 0.0f, 1.0f, 0.0f});
 		paint.setColorFilter(new ColorMatrixColorFilter(matrix));
-		//Draw to Canvas
-		Canvas canvas = new Canvas(bitmap);
-		canvas.drawBitmap(source, 0, 0, paint);
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		long start = System.nanoTime();
+		Bitmap bitmap;
+		if(HardwareBitmaps.isHardware(source))
+		{
+			bitmap = HardwareBitmaps.draw(pool, source, this);
+		}
+		else
+		{
+			bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+			//Draw to Canvas
+			Canvas canvas = new Canvas(bitmap);
+			drawStripe(canvas, source, 0, source.getHeight(), source.getWidth(), source.getHeight());
+		}
+		TransformationMetrics.record("Inverse", "canvas", source.getWidth(), source.getHeight(), System.nanoTime() - start);
 		return bitmap;
 	}
 
+	@Override
+	public boolean isResolutionIndependent()
+	{
+		return true;
+	}
+
+	@Override
+	public void getSourceRows(int width, int height, int top, int bottom, int[] rows)
+	{
+		rows[0] = top;
+		rows[1] = bottom;
+	}
+
+	@Override
+	public void drawStripe(Canvas canvas, Bitmap input, int inputTop, int inputRows, int width, int height)
+	{
+		canvas.drawBitmap(input, new Rect(0, 0, width, inputRows), new Rect(0, inputTop, width, inputTop + inputRows), paint);
+	}
+
 	@Override
 	public boolean equals(Object object)
 	{
-		if (object instanceof Greyscale)
+		if (object instanceof Inverse)
 		{
 			return true;
 		}
@@ -67,5 +102,6 @@ public class Inverse extends BitmapTransformation
 	public void updateDiskCacheKey(MessageDigest messageDigest)
 	{
 		messageDigest.update(ID_BYTES);
+		CacheKeys.updateVersion(messageDigest, VERSION);
 	}
 }
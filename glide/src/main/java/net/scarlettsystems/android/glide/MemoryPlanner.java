@@ -0,0 +1,242 @@
+package net.scarlettsystems.android.glide;
+
+import android.support.annotation.IntDef;
+
+import com.bumptech.glide.load.Transformation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * MemoryPlanner.java
+ * Estimates the peak scratch memory of each strategy a transformation can run
+ * with, and picks the most preferred strategy that fits a per-call budget.
+ * Strategies are preferred in order of speed; if none fits, the one with the
+ * smallest peak is used. A transformation only offers strategies with the
+ * same output, such as in-place, full and tiled blurs, because the output is
+ * cached under the same key whichever strategy produced it. The chosen strategy and its estimate
+ * are reported through TransformationMetrics.
+ * <p>
+ * Memory pressure narrows the strategies considered, see MemoryPressure.
+ * Estimates count bitmaps and RenderScript allocations at four bytes per
+ * ARGB pixel and one byte per alpha pixel, excluding the source.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class MemoryPlanner
+{
+	@IntDef({STRATEGY_IN_PLACE, STRATEGY_FULL, STRATEGY_TILED, STRATEGY_ALPHA_MASK, STRATEGY_DOWNSAMPLED})
+	@Retention(RetentionPolicy.SOURCE)
+	public @interface Strategy {}
+
+	/** Writes the result over the source, needing only working buffers. */
+	public static final int STRATEGY_IN_PLACE = 0;
+	/** Processes the whole image at full resolution into a new output. */
+	public static final int STRATEGY_FULL = 1;
+	/** Processes the image in horizontal stripes with stripe-sized buffers. */
+	public static final int STRATEGY_TILED = 2;
+	/** Works on a one byte per pixel alpha mask rather than the full image. */
+	public static final int STRATEGY_ALPHA_MASK = 3;
+	/** Processes a downscaled copy of the image. */
+	public static final int STRATEGY_DOWNSAMPLED = 4;
+
+	private static final int ARGB_BYTES = 4;
+	private static volatile long budgetBytes = Long.MAX_VALUE;
+
+	private MemoryPlanner(){}
+
+	/**
+	 * A strategy together with its estimated peak scratch memory.
+	 */
+	public static final class Plan
+	{
+		private final int strategy;
+		private final long peakBytes;
+		private final float scale;
+
+		Plan(@Strategy int strategy, long peakBytes, float scale)
+		{
+			this.strategy = strategy;
+			this.peakBytes = peakBytes;
+			this.scale = scale;
+		}
+
+		@Strategy
+		public int getStrategy()
+		{
+			return strategy;
+		}
+
+		public long getPeakBytes()
+		{
+			return peakBytes;
+		}
+
+		/**
+		 * Returns the resolution at which the image is processed, relative to the source.
+		 *
+		 * @return scale factor, 1 for full resolution
+		 */
+		public float getScale()
+		{
+			return scale;
+		}
+
+		@Override
+		public String toString()
+		{
+			return getStrategyName(strategy) + "(" + peakBytes + "B)";
+		}
+	}
+
+	/**
+	 * Sets the peak scratch memory a single transformation call may use.
+	 * Unlimited by default.
+	 *
+	 * @param bytes budget in bytes
+	 */
+	public static void setBudget(long bytes)
+	{
+		budgetBytes = Math.max(0, bytes);
+	}
+
+	public static long getBudget()
+	{
+		return budgetBytes;
+	}
+
+	/**
+	 * Returns the plan the given transformation would currently choose for a
+	 * source of the given dimensions.
+	 *
+	 * @param transformation transformation to plan
+	 * @param width source width in pixels
+	 * @param height source height in pixels
+	 * @return chosen plan, or null if the transformation is not planned
+	 */
+	public static Plan plan(Transformation<?> transformation, int width, int height)
+	{
+		if(transformation instanceof GaussianBlur)
+		{
+			return ((GaussianBlur)transformation).plan(width, height);
+		}
+		if(transformation instanceof TintedBlur)
+		{
+			return ((TintedBlur)transformation).plan(width, height);
+		}
+		if(transformation instanceof Shadow)
+		{
+			return ((Shadow)transformation).plan(width, height);
+		}
+		if(transformation instanceof PaddedShadow)
+		{
+			return ((PaddedShadow)transformation).plan(width, height);
+		}
+		if(transformation instanceof Mosaic)
+		{
+			return ((Mosaic)transformation).plan(width, height);
+		}
+		return null;
+	}
+
+	public static String getStrategyName(@Strategy int strategy)
+	{
+		switch(strategy)
+		{
+			case STRATEGY_IN_PLACE:
+				return "in-place";
+			case STRATEGY_FULL:
+				return "full";
+			case STRATEGY_TILED:
+				return "tiled";
+			case STRATEGY_ALPHA_MASK:
+				return "alpha-mask";
+			case STRATEGY_DOWNSAMPLED:
+				return "downsampled";
+			default:
+				throw new IllegalArgumentException("Invalid Strategy");
+		}
+	}
+
+	/**
+	 * Returns the first candidate within budget, or the smallest if none is.
+	 *
+	 * @param candidates plans in order of preference
+	 * @return chosen plan
+	 */
+	static Plan choose(Plan... candidates)
+	{
+		long budget = budgetBytes;
+		Plan smallest = candidates[0];
+		for(Plan candidate : candidates)
+		{
+			if(candidate.peakBytes <= budget)
+			{
+				return candidate;
+			}
+			if(candidate.peakBytes < smallest.peakBytes)
+			{
+				smallest = candidate;
+			}
+		}
+		return smallest;
+	}
+
+	static long argbBytes(int width, int height)
+	{
+		return (long)width * (long)height * ARGB_BYTES;
+	}
+
+	static long scaledArgbBytes(int width, int height, float scale)
+	{
+		return argbBytes(Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)));
+	}
+
+	/**
+	 * RenderScript blur over the source: input and output allocations.
+	 */
+	static Plan inPlaceBlur(int width, int height)
+	{
+		return new Plan(STRATEGY_IN_PLACE, 2 * argbBytes(width, height), 1f);
+	}
+
+	/**
+	 * RenderScript blur into a new bitmap: output bitmap plus input and output allocations.
+	 */
+	static Plan fullBlur(int width, int height)
+	{
+		return new Plan(STRATEGY_FULL, 3 * argbBytes(width, height), 1f);
+	}
+
+	/**
+	 * Striped blur into a new bitmap: output bitmap plus a stripe bitmap and its allocations.
+	 */
+	static Plan tiledBlur(int width, int height, float radius)
+	{
+		int halo = (int)Math.ceil(Math.min(radius, BlurEngine.RENDERSCRIPT_MAX_BLUR_RADIUS)) + 1;
+		int tileHeight = Math.min(height, BlurEngine.getStripeHeight(width, radius) + 2 * halo);
+		return new Plan(STRATEGY_TILED, argbBytes(width, height) + 3 * argbBytes(width, tileHeight), 1f);
+	}
+
+	/**
+	 * Blur of a downscaled copy: the copy and its allocations, plus the output if not in place.
+	 */
+	static Plan downsampledBlur(int width, int height, float scale, boolean newOutput)
+	{
+		long output = newOutput ? argbBytes(width, height) : 0;
+		return new Plan(STRATEGY_DOWNSAMPLED, output + 3 * scaledArgbBytes(width, height, scale), scale);
+	}
+
+	/**
+	 * Platform mask blur: output bitmap plus the extracted alpha and Skia's blurred mask,
+	 * both grown by the blur's spread.
+	 */
+	static Plan alphaMask(int width, int height, float radius)
+	{
+		long spread = 2L * (long)Math.ceil(radius * 3f);
+		long mask = (width + spread) * (height + spread);
+		return new Plan(STRATEGY_ALPHA_MASK, argbBytes(width, height) + 2 * mask, 1f);
+	}
+}
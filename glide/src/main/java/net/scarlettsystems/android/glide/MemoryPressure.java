@@ -0,0 +1,159 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * MemoryPressure.java
+ * Tracks the memory pressure reported by the system through onTrimMemory and
+ * degrades the transformations in this package accordingly. Under pressure
+ * caches are flushed, and GaussianBlur and TintedBlur switch to tiled blurs
+ * with smaller scratch allocations. Output is never degraded, as Glide may
+ * keep it in its disk cache long after pressure eases.
+ * <p>
+ * The system does not report when pressure eases, so the degradation level
+ * returns to LEVEL_NONE once no trim callback has been received for
+ * {@link #RECOVERY_MILLIS}.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class MemoryPressure implements ComponentCallbacks2
+{
+	public static final long RECOVERY_MILLIS = 60000;
+
+	@IntDef({LEVEL_NONE, LEVEL_MODERATE, LEVEL_CRITICAL})
+	@Retention(RetentionPolicy.SOURCE)
+	public @interface Level {}
+
+	/** Full quality strategies. */
+	public static final int LEVEL_NONE = 0;
+	/** Caches flushed and tiled blurs. */
+	public static final int LEVEL_MODERATE = 1;
+	/** As moderate, reported separately for metrics. */
+	public static final int LEVEL_CRITICAL = 2;
+
+	private static final MemoryPressure INSTANCE = new MemoryPressure();
+	private static volatile int level = LEVEL_NONE;
+	private static volatile long levelTime = 0;
+	private static Context registeredContext;
+
+	private MemoryPressure(){}
+
+	/**
+	 * Registers for trim memory callbacks with the application context.
+	 * Registering more than once has no effect.
+	 *
+	 * @param context current context
+	 */
+	public static synchronized void register(Context context)
+	{
+		if(registeredContext != null){return;}
+		registeredContext = context.getApplicationContext();
+		registeredContext.registerComponentCallbacks(INSTANCE);
+	}
+
+	/**
+	 * Stops receiving trim memory callbacks and resets the degradation level.
+	 */
+	public static synchronized void unregister()
+	{
+		if(registeredContext == null){return;}
+		registeredContext.unregisterComponentCallbacks(INSTANCE);
+		registeredContext = null;
+		reset();
+	}
+
+	/**
+	 * Returns the current degradation level.
+	 *
+	 * @return level as a @Level
+	 */
+	@Level
+	public static int getLevel()
+	{
+		int current = level;
+		if(current != LEVEL_NONE && SystemClock.elapsedRealtime() - levelTime > RECOVERY_MILLIS)
+		{
+			level = LEVEL_NONE;
+			return LEVEL_NONE;
+		}
+		return current;
+	}
+
+	/**
+	 * Sets the degradation level directly, for example from an app's own
+	 * memory monitoring. Levels set this way also recover after RECOVERY_MILLIS.
+	 *
+	 * @param newLevel level as a @Level
+	 */
+	public static void setLevel(@Level int newLevel)
+	{
+		levelTime = SystemClock.elapsedRealtime();
+		level = newLevel;
+		if(newLevel != LEVEL_NONE)
+		{
+			flushCaches();
+		}
+	}
+
+	/**
+	 * Returns to full quality strategies immediately.
+	 */
+	public static void reset()
+	{
+		level = LEVEL_NONE;
+	}
+
+	/**
+	 * Flushes every cache held by this library, and releases the RenderScript
+	 * allocations kept for blurring animation frames.
+	 */
+	public static void flushCaches()
+	{
+		BlurEngine.FrameBlur.releaseAll();
+		BlurPyramid.clearCache();
+		IntermediateCache.clear();
+		Shape.clearMaskCache();
+	}
+
+	@Override
+	public void onTrimMemory(int trimLevel)
+	{
+		if(trimLevel >= TRIM_MEMORY_MODERATE || trimLevel == TRIM_MEMORY_RUNNING_CRITICAL)
+		{
+			raise(LEVEL_CRITICAL);
+		}
+		else if(trimLevel >= TRIM_MEMORY_BACKGROUND || trimLevel == TRIM_MEMORY_RUNNING_LOW
+				|| trimLevel == TRIM_MEMORY_RUNNING_MODERATE)
+		{
+			raise(LEVEL_MODERATE);
+		}
+		else if(trimLevel >= TRIM_MEMORY_UI_HIDDEN)
+		{
+			//Not under pressure, but nothing will be drawn for a while
+			flushCaches();
+		}
+	}
+
+	@Override
+	public void onLowMemory()
+	{
+		raise(LEVEL_CRITICAL);
+	}
+
+	@Override
+	public void onConfigurationChanged(Configuration newConfig){}
+
+	private static void raise(int newLevel)
+	{
+		setLevel(Math.max(getLevel(), newLevel));
+	}
+}
@@ -25,8 +25,13 @@ public class Mosaic extends BitmapTransformation
 {
 	private static final String ID = "net.scarlettsystems.android.transformations.glide.Mosaic";
 	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 2;
 	private Integer xPixels, yPixels;
 	private float factor = 1f;
+	private CancellationToken cancellationToken;
+	private Rect[] regions;
+	private final Paint paint = new Paint();
 
 	/**
 	 * Returns transformation that can pixellate the image by a specified amount.
@@ -91,54 +96,183 @@ public class Mosaic extends BitmapTransformation
 		return this;
 	}
 
+	/**
+	 * Sets a token that stops the pixellation early once cancelled.
+	 * Loads with different tokens are not merged by Glide, so cancelling one
+	 * never aborts another.
+	 *
+	 * @param token cancellation token, or null for none
+	 * @return returns self
+	 */
+	public Mosaic setCancellationToken(CancellationToken token)
+	{
+		this.cancellationToken = token;
+		return this;
+	}
+
+	/**
+	 * Limits the pixellation to the given regions of the source image, in
+	 * source pixels, for example to obscure faces or licence plates. The block
+	 * size is the same as for the whole image, and pixels outside the regions
+	 * are copied through unchanged. Calling with no regions pixellates the
+	 * whole image again.
+	 *
+	 * @param regions regions to pixellate
+	 * @return returns self
+	 */
+	public Mosaic setRegions(Rect... regions)
+	{
+		this.regions = Regions.copyOf(regions);
+		return this;
+	}
+
+	/**
+	 * Mosaic has a single strategy: the output plus the pixellated copy.
+	 */
+	MemoryPlanner.Plan plan(int width, int height)
+	{
+		int[] dimensions = resolveDimensions(width, height);
+		return MemoryPlanner.choose(new MemoryPlanner.Plan(MemoryPlanner.STRATEGY_FULL,
+				MemoryPlanner.argbBytes(width, height) + MemoryPlanner.argbBytes(dimensions[0], dimensions[1]), 1f));
+	}
+
 	@Override
 	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
 	{
+		if(HardwareBitmaps.isHardware(source))
+		{
+			//Pixellation draws through an intermediate bitmap, so work on one software copy
+			Bitmap copy = HardwareBitmaps.softwareCopy(source);
+			Bitmap bitmap = null;
+			try
+			{
+				bitmap = transform(pool, copy, outWidth, outHeight);
+				return bitmap;
+			}
+			finally
+			{
+				if(bitmap != copy)
+				{
+					pool.put(copy);
+				}
+			}
+		}
+		long start = System.nanoTime();
+		CancellationToken.throwIfCancelled(cancellationToken);
 		//Size Image
-		resolveDimensions(source.getWidth(), source.getHeight());
-		Bitmap scaled = Bitmap.createScaledBitmap(source, xPixels, yPixels, false);
-		Bitmap bitmap = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
-		Rect bitmapBounds = new Rect(0, 0, source.getWidth(), source.getHeight());
-		//Create Image Paint
-		Paint paint = new Paint();
-		paint.setAntiAlias(false);
-		paint.setFilterBitmap(false);
-		//Draw to Canvas
+		MemoryPlanner.Plan plan = plan(source.getWidth(), source.getHeight());
+		int[] dimensions = resolveDimensions(source.getWidth(), source.getHeight());
+		int scaledWidth = dimensions[0];
+		int scaledHeight = dimensions[1];
+		if(regions != null)
+		{
+			Bitmap bitmap = pixellateRegions(pool, source, scaledWidth, scaledHeight);
+			TransformationMetrics.record("Mosaic", "canvas", plan,
+					source.getWidth(), source.getHeight(), System.nanoTime() - start);
+			return bitmap;
+		}
+		Bitmap scaled = pool.get(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
+		try
+		{
+			new Canvas(scaled).drawBitmap(source, null, new Rect(0, 0, scaledWidth, scaledHeight), paint);
+			CancellationToken.throwIfCancelled(cancellationToken);
+			Bitmap bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+			Rect bitmapBounds = new Rect(0, 0, source.getWidth(), source.getHeight());
+			//Draw to Canvas
+			Canvas canvas = new Canvas(bitmap);
+			canvas.drawBitmap(scaled, null, bitmapBounds, paint);
+			TransformationMetrics.record("Mosaic", "canvas", plan,
+					source.getWidth(), source.getHeight(), System.nanoTime() - start);
+			return bitmap;
+		}
+		finally
+		{
+			pool.put(scaled);
+		}
+	}
+
+	/**
+	 * Pixellates only the configured regions into a pooled copy of the source,
+	 * using the block size that the whole image would have been given.
+	 */
+	private Bitmap pixellateRegions(BitmapPool pool, Bitmap source, int scaledWidth, int scaledHeight)
+	{
+		float blockWidth = (float)source.getWidth() / (float)scaledWidth;
+		float blockHeight = (float)source.getHeight() / (float)scaledHeight;
+		Bitmap bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
 		Canvas canvas = new Canvas(bitmap);
-		canvas.drawBitmap(scaled, null, bitmapBounds, paint);
-		scaled.recycle();
+		canvas.drawBitmap(source, 0, 0, null);
+		try
+		{
+			for(Rect region : Regions.clip(regions, source.getWidth(), source.getHeight()))
+			{
+				CancellationToken.throwIfCancelled(cancellationToken);
+				int regionWidth = Math.max(1, Math.round(region.width() / blockWidth));
+				int regionHeight = Math.max(1, Math.round(region.height() / blockHeight));
+				Bitmap scaled = pool.get(regionWidth, regionHeight, Bitmap.Config.ARGB_8888);
+				try
+				{
+					new Canvas(scaled).drawBitmap(source, region, new Rect(0, 0, regionWidth, regionHeight), paint);
+					canvas.drawBitmap(scaled, null, region, paint);
+				}
+				finally
+				{
+					pool.put(scaled);
+				}
+			}
+		}
+		catch(TransformationCancelledException e)
+		{
+			pool.put(bitmap);
+			throw e;
+		}
 		return bitmap;
-
 	}
 
-	private void resolveDimensions(int width, int height)
+	/**
+	 * Returns the pixellated dimensions for a source of the given dimensions,
+	 * leaving the configuration untouched so that it applies to every source.
+	 */
+	private int[] resolveDimensions(int width, int height)
 	{
-		if(xPixels != -1)
+		if(xPixels != null && xPixels != -1)
 		{
-			xPixels = Math.min(width, xPixels);
-			yPixels = Math.round((float)height / Math.max(1f, (float)width / (float)xPixels));
+			int x = Math.min(width, xPixels);
+			int y = Math.max(1, Math.round((float)height / Math.max(1f, (float)width / (float)x)));
+			return new int[]{x, y};
 		}
-		else if(yPixels != -1)
+		else if(yPixels != null && yPixels != -1)
 		{
-			yPixels = Math.min(width, yPixels);
-			xPixels = Math.round((float)height / Math.max(1f, (float)height / (float)yPixels));
+			int y = Math.min(height, yPixels);
+			int x = Math.max(1, Math.round((float)width / Math.max(1f, (float)height / (float)y)));
+			return new int[]{x, y};
 		}
 		else
 		{
-			xPixels = Math.max(1, Math.round((float)width / factor));
-			yPixels = Math.max(1, Math.round((float)height / factor));
+			return new int[]{Math.max(1, Math.round((float)width / factor)),
+					Math.max(1, Math.round((float)height / factor))};
 		}
 	}
 
+	/**
+	 * Returns the configured pixel count, or -1 if it is not set.
+	 */
+	private static int valueOf(Integer pixels)
+	{
+		return pixels != null ? pixels : -1;
+	}
+
 	@Override
 	public boolean equals(Object object)
 	{
 		if (object instanceof Mosaic)
 		{
 			Mosaic other = (Mosaic) object;
-			return xPixels == other.xPixels
-					&& yPixels == other.yPixels
-					&& factor == other.factor;
+			return valueOf(xPixels) == valueOf(other.xPixels)
+					&& valueOf(yPixels) == valueOf(other.yPixels)
+					&& factor == other.factor
+					&& Regions.equals(regions, other.regions)
+					&& cancellationToken == other.cancellationToken;
 		}
 		return false;
 	}
@@ -146,10 +280,11 @@ public class Mosaic extends BitmapTransformation
 	@Override
 	public int hashCode()
 	{
-		return Util.hashCode(ID.hashCode(),
-				Util.hashCode(xPixels,
-						Util.hashCode(yPixels,
-						Util.hashCode(factor))));
+		return Util.hashCode(cancellationToken, Util.hashCode(ID.hashCode(),
+				Util.hashCode(valueOf(xPixels),
+						Util.hashCode(valueOf(yPixels),
+						Util.hashCode(factor,
+						Regions.hashCode(regions))))));
 	}
 
 	@Override
@@ -158,9 +293,11 @@ public class Mosaic extends BitmapTransformation
 		ArrayList<byte[]> messages = new ArrayList<>();
 
 		messages.add(ID_BYTES);
-		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(xPixels).array());
-		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(yPixels).array());
+		CacheKeys.addVersion(messages, VERSION);
+		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(valueOf(xPixels)).array());
+		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(valueOf(yPixels)).array());
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(factor).array());
+		Regions.addTo(messages, regions);
 
 		for(int c = 0; c < messages.size(); c++)
 		{
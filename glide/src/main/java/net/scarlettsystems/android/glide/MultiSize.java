@@ -0,0 +1,122 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+
+import java.security.MessageDigest;
+
+/**
+ * MultiSize.java
+ * Wraps a transformation for images that are shown at several sizes, such as
+ * in a list and a detail screen. The transformation is applied once, at the
+ * largest size requested so far, and smaller sizes are produced by
+ * downsampling that result rather than transforming again. Each size is still
+ * a separate Glide request, and is cached by Glide under the key it would
+ * normally get.
+ * <p>
+ * Only transformations that are ResolutionIndependent share their result.
+ * Others, such as GaussianBlur, whose radius is measured in pixels, are
+ * applied to every size as usual.
+ * <pre>
+ * MultiSize greyscale = new MultiSize(context, url, new Greyscale());
+ * greyscale.preload(Glide.with(context).asBitmap().load(url), 1080, 1080);
+ * </pre>
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see ResolutionIndependent
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class MultiSize extends BitmapTransformation
+{
+	private Context mContext;
+	private final String sourceKey;
+	private final Transformation<Bitmap> delegate;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param context current context
+	 * @param sourceKey unique key of the source image, such as its URL
+	 * @param delegate transformation to share between sizes
+	 */
+	public MultiSize(Context context, String sourceKey, Transformation<Bitmap> delegate)
+	{
+		mContext = context.getApplicationContext();
+		this.sourceKey = sourceKey;
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Loads the largest size ahead of time, so that the result is computed
+	 * once and every smaller size is derived from it.
+	 *
+	 * @param request request for the source image
+	 * @param width largest width that will be requested, in pixels
+	 * @param height largest height that will be requested, in pixels
+	 * @param <T> resource type of the request
+	 * @return the preload target
+	 */
+	public <T> Target<T> preload(RequestBuilder<T> request, int width, int height)
+	{
+		return request.apply(RequestOptions.bitmapTransform(this)).preload(width, height);
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		long start = System.nanoTime();
+		Bitmap result;
+		String engine;
+		if(!(delegate instanceof ResolutionIndependent)
+				|| !((ResolutionIndependent)delegate).isResolutionIndependent())
+		{
+			result = TransformRunner.run(mContext, delegate, source, outWidth, outHeight);
+			engine = "transformed";
+		}
+		else
+		{
+			String key = IntermediateCache.keyOf("size:" + sourceKey, delegate);
+			result = IntermediateCache.getScaled(pool, key, source.getWidth(), source.getHeight());
+			engine = "downsampled";
+			if(result == null)
+			{
+				result = TransformRunner.run(mContext, delegate, source, outWidth, outHeight);
+				IntermediateCache.putIfLarger(key, result);
+				engine = "transformed";
+			}
+		}
+		TransformationMetrics.record("MultiSize", engine, source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof MultiSize)
+		{
+			MultiSize other = (MultiSize) object;
+			return delegate.equals(other.delegate);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return delegate.hashCode();
+	}
+
+	@Override
+	public void updateDiskCacheKey(MessageDigest messageDigest)
+	{
+		delegate.updateDiskCacheKey(messageDigest);
+	}
+}
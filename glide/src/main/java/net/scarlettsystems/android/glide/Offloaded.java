@@ -0,0 +1,128 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.request.RequestOptions;
+
+import java.security.MessageDigest;
+import java.util.concurrent.Callable;
+
+/**
+ * Offloaded.java
+ * Wraps a transformation so that, when it is heavy for the given source, it
+ * runs on the bounded HeavyExecutor rather than on Glide's thread. Results and
+ * cache keys are identical to those of the wrapped transformation.
+ * <p>
+ * Use {@link #options(Context, Transformation)} to also move the request off
+ * Glide's bounded source executor, which otherwise blocks while waiting for
+ * the heavy work, so that light decodes keep flowing:
+ * <pre>
+ * Glide.with(this).load(url).apply(Offloaded.options(this, new GaussianBlur(this, 20))).into(view);
+ * </pre>
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see HeavyTransformation
+ * @see HeavyExecutor
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class Offloaded extends BitmapTransformation
+{
+	/** Sources with at least this many pixels make blurs and shadows heavy. */
+	static final int HEAVY_PIXEL_COUNT = 512 * 512;
+
+	private Context mContext;
+	private final Transformation<Bitmap> delegate;
+	private Priority priority;
+
+	/**
+	 * Default constructor. Offloaded work runs at normal priority.
+	 *
+	 * @param context current context
+	 * @param delegate transformation to offload when heavy
+	 */
+	public Offloaded(Context context, Transformation<Bitmap> delegate)
+	{
+		mContext = context.getApplicationContext();
+		this.delegate = delegate;
+		this.priority = Priority.NORMAL;
+	}
+
+	/**
+	 * Sets the priority of the offloaded work relative to other heavy transformations.
+	 *
+	 * @param priority Glide priority
+	 * @return returns self
+	 */
+	public Offloaded setPriority(Priority priority)
+	{
+		this.priority = priority;
+		return this;
+	}
+
+	/**
+	 * Returns request options applying the transformation offloaded, on Glide's
+	 * unlimited source executor so the bounded one stays free for light loads.
+	 *
+	 * @param context current context
+	 * @param transformation transformation to offload when heavy
+	 * @return request options
+	 */
+	public static RequestOptions options(Context context, Transformation<Bitmap> transformation)
+	{
+		return RequestOptions.bitmapTransform(new Offloaded(context, transformation))
+				.useUnlimitedSourceGeneratorsPool(true);
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, final Bitmap source, final int outWidth, final int outHeight)
+	{
+		long start = System.nanoTime();
+		if(!(delegate instanceof HeavyTransformation)
+				|| !((HeavyTransformation)delegate).isHeavy(source.getWidth(), source.getHeight()))
+		{
+			Bitmap bitmap = TransformRunner.run(mContext, delegate, source, outWidth, outHeight);
+			TransformationMetrics.record("Offloaded", "inline", source.getWidth(), source.getHeight(), System.nanoTime() - start);
+			return bitmap;
+		}
+		//Includes the time spent waiting for the heavy executor
+		Bitmap bitmap = HeavyExecutor.get().run(new Callable<Bitmap>()
+		{
+			@Override
+			public Bitmap call()
+			{
+				return TransformRunner.run(mContext, delegate, source, outWidth, outHeight);
+			}
+		}, priority);
+		TransformationMetrics.record("Offloaded", "heavy-executor", source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return bitmap;
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof Offloaded)
+		{
+			Offloaded other = (Offloaded) object;
+			return delegate.equals(other.delegate);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return delegate.hashCode();
+	}
+
+	@Override
+	public void updateDiskCacheKey(MessageDigest messageDigest)
+	{
+		delegate.updateDiskCacheKey(messageDigest);
+	}
+}
@@ -0,0 +1,428 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.support.annotation.ColorInt;
+import android.support.annotation.ColorRes;
+import android.support.v8.renderscript.RSRuntimeException;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.util.Util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+
+/**
+ * PaddedShadow.java
+ * Draws a shadow as Shadow does, but first insets the image by exactly the
+ * padding the shadow needs, so it is never clipped. The result is the same
+ * as Padding followed by Shadow, with the padding on each side worked out
+ * from the blur radius, elevation and angle.
+ * <p>
+ * The shadow and the inset image are drawn straight into a single output
+ * bitmap, rather than into one bitmap for the padding and several more for
+ * the shadow.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see Shadow
+ * @see Padding
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class PaddedShadow extends BitmapTransformation implements HeavyTransformation, ScalableTransformation
+{
+	private static final String ID = "net.scarlettsystems.android.transformations.glide.PaddedShadow";
+	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 1;
+	private static final float RENDERSCRIPT_MAX_BLUR_RADIUS = BlurEngine.RENDERSCRIPT_MAX_BLUR_RADIUS;
+	private Context mContext;
+	private float blurRadius, elevation, angle;
+	private int colour;
+	private int engine;
+	private CancellationToken cancellationToken;
+	private BlurEngine.FrameBlur frameBlur;
+	private final Paint imagePaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+	private final Paint scalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	/**
+	 * Default constructor.
+	 * The shadow is set at 0 elevation and 0 blur, with black colour at 50%
+	 * opacity, by default, in which case no padding is added.
+	 *
+	 * @param  context  current context
+	 */
+	public PaddedShadow(Context context)
+	{
+		mContext = context;
+		this.blurRadius = 0;
+		this.elevation = 0;
+		this.angle = 0;
+		this.colour = Color.argb(128,0,0,0);
+		this.engine = Shadow.ENGINE_AUTO;
+		this.frameBlur = new BlurEngine.FrameBlur(context);
+	}
+
+	/**
+	 * Sets the blur radius of the shadow.
+	 *
+	 * @param  blurRadius  blur radius in pixels of the output
+	 * @return      returns self
+	 */
+	public PaddedShadow setBlurRadius(float blurRadius)
+	{
+		this.blurRadius = Math.max(0f, blurRadius);
+		return this;
+	}
+
+	/**
+	 * Sets the elevation, or how much the shadow is offset from the image.
+	 *
+	 * @param  elevation  elevation in pixels of the output
+	 * @return      returns self
+	 */
+	public PaddedShadow setElevation(float elevation)
+	{
+		this.elevation = elevation;
+		return this;
+	}
+
+	/**
+	 * Sets the angle in which the shadow is offset from the image, as in Shadow.
+	 *
+	 * @param  angle  the angle in degrees
+	 * @return      returns self
+	 */
+	public PaddedShadow setAngle(float angle)
+	{
+		this.angle = angle;
+		return this;
+	}
+
+	/**
+	 * Sets the shadow's colour.
+	 * Shadow is drawn black with 50% opacity by default.
+	 *
+	 * @param colour the colour as a @ColorInt
+	 * @return returns self
+	 */
+	public PaddedShadow setShadowColour(@ColorInt int colour)
+	{
+		this.colour = colour;
+		return this;
+	}
+
+	/**
+	 * Sets the shadow's colour by colour resource.
+	 * Shadow is drawn black with 50% opacity by default.
+	 *
+	 * @param  res  the colour resource as a @ColorRes
+	 * @return      returns self
+	 */
+	public PaddedShadow setShadowColourRes(@ColorRes int res)
+	{
+		if(Build.VERSION.SDK_INT < 23)
+		{
+			this.colour = mContext.getResources().getColor(res);
+		}
+		else
+		{
+			this.colour = mContext.getResources().getColor(res, null);
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the engine used to render the shadow, as in Shadow.
+	 *
+	 * @param engine the engine as a Shadow.Engine
+	 * @return returns self
+	 */
+	public PaddedShadow setEngine(@Shadow.Engine int engine)
+	{
+		switch(engine)
+		{
+			case Shadow.ENGINE_AUTO:
+			case Shadow.ENGINE_RENDERSCRIPT:
+			case Shadow.ENGINE_PLATFORM:
+				this.engine = engine;
+				return this;
+			default:
+				throw new IllegalArgumentException("Invalid Engine");
+		}
+	}
+
+	/**
+	 * Sets a token that stops the shadow rendering early once cancelled.
+	 * Loads with different tokens are not merged by Glide, so cancelling one
+	 * never aborts another.
+	 *
+	 * @param token cancellation token, or null for none
+	 * @return returns self
+	 */
+	public PaddedShadow setCancellationToken(CancellationToken token)
+	{
+		this.cancellationToken = token;
+		return this;
+	}
+
+	/**
+	 * Returns the padding the shadow needs on each side, in output pixels:
+	 * the blur radius on every side, plus the offset on the sides it points to.
+	 *
+	 * @return padding as left, top, right and bottom
+	 */
+	public int[] getPadding()
+	{
+		return getPadding(blurRadius, getShadowX(), getShadowY());
+	}
+
+	/**
+	 * Returns the padding needed by a shadow of the given blur radius and
+	 * offset, as {@link #getPadding()}.
+	 */
+	static int[] getPadding(float blurRadius, float shadowX, float shadowY)
+	{
+		return new int[]{
+				(int)Math.ceil(blurRadius + Math.max(0f, -shadowX)),
+				(int)Math.ceil(blurRadius + Math.max(0f, -shadowY)),
+				(int)Math.ceil(blurRadius + Math.max(0f, shadowX)),
+				(int)Math.ceil(blurRadius + Math.max(0f, shadowY))};
+	}
+
+	private float getShadowX()
+	{
+		return elevation * (float)Math.cos(Math.toRadians(angle));
+	}
+
+	private float getShadowY()
+	{
+		return -(elevation * (float)Math.sin(Math.toRadians(angle)));
+	}
+
+	/**
+	 * Chooses the shadow strategy for an output of the given dimensions.
+	 * ALPHA_MASK runs the platform engine, the others RenderScript on a
+	 * single, possibly downscaled, shadow layer.
+	 */
+	MemoryPlanner.Plan plan(int width, int height)
+	{
+		if(engine == Shadow.ENGINE_PLATFORM || (engine == Shadow.ENGINE_AUTO && Shadow.renderScriptUnavailable))
+		{
+			return MemoryPlanner.choose(MemoryPlanner.alphaMask(width, height, Shadow.toMaskFilterRadius(blurRadius)));
+		}
+		float scaleFactor = Math.min(1f, RENDERSCRIPT_MAX_BLUR_RADIUS / blurRadius);
+		return MemoryPlanner.choose(MemoryPlanner.downsampledBlur(width, height, scaleFactor, true));
+	}
+
+	@Override
+	public PaddedShadow scaledBy(float factor)
+	{
+		return new PaddedShadow(mContext)
+				.setBlurRadius(blurRadius * factor)
+				.setElevation(elevation * factor)
+				.setAngle(angle)
+				.setShadowColour(colour)
+				.setEngine(engine)
+				.setCancellationToken(cancellationToken);
+	}
+
+	@Override
+	public boolean isHeavy(int width, int height)
+	{
+		return (long)width * (long)height >= Offloaded.HEAVY_PIXEL_COUNT;
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		if(HardwareBitmaps.isHardware(source))
+		{
+			//The shadow is blurred from the source's pixels, so work on one software copy
+			Bitmap copy = HardwareBitmaps.softwareCopy(source);
+			Bitmap bitmap = null;
+			try
+			{
+				bitmap = transform(pool, copy, outWidth, outHeight);
+				return bitmap;
+			}
+			finally
+			{
+				if(bitmap != copy)
+				{
+					pool.put(copy);
+				}
+			}
+		}
+		long start = System.nanoTime();
+		CancellationToken.throwIfCancelled(cancellationToken);
+		int width = source.getWidth();
+		int height = source.getHeight();
+		MemoryPlanner.Plan plan = plan(width, height);
+		//Inset the image by the shadow's padding, keeping at least a pixel of it
+		int[] padding = getPadding();
+		float left = Math.min(padding[0], width - 1);
+		float top = Math.min(padding[1], height - 1);
+		RectF imageBounds = new RectF(left, top,
+				Math.max(left + 1, width - padding[2]), Math.max(top + 1, height - padding[3]));
+		RectF shadowBounds = new RectF(imageBounds);
+		shadowBounds.offset(getShadowX(), getShadowY());
+
+		Bitmap bitmap = pool.get(width, height, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(bitmap);
+		int ran = Shadow.ENGINE_PLATFORM;
+		try
+		{
+			if(plan.getStrategy() != MemoryPlanner.STRATEGY_ALPHA_MASK)
+			{
+				try
+				{
+					drawRenderScriptShadow(pool, canvas, source, shadowBounds, plan.getScale());
+					ran = Shadow.ENGINE_RENDERSCRIPT;
+				}
+				catch(RSRuntimeException e)
+				{
+					Shadow.renderScriptUnavailable = true;
+					plan = MemoryPlanner.alphaMask(width, height, Shadow.toMaskFilterRadius(blurRadius));
+				}
+			}
+			if(ran == Shadow.ENGINE_PLATFORM)
+			{
+				drawPlatformShadow(canvas, source, shadowBounds);
+			}
+		}
+		catch(TransformationCancelledException e)
+		{
+			pool.put(bitmap);
+			throw e;
+		}
+		canvas.drawBitmap(source, null, imageBounds, imagePaint);
+
+		TransformationMetrics.record("PaddedShadow", Shadow.getEngineName(ran), plan,
+				width, height, System.nanoTime() - start);
+		return bitmap;
+	}
+
+	/**
+	 * Draws the inset image into a shadow layer, at a scale within the blur
+	 * intrinsic's radius, blurs it, and tints it into the output.
+	 */
+	private void drawRenderScriptShadow(BitmapPool pool, Canvas canvas, Bitmap source, RectF shadowBounds, float scaleFactor)
+	{
+		int width = canvas.getWidth();
+		int height = canvas.getHeight();
+		int layerWidth = Math.max(1, Math.round((float)width * scaleFactor));
+		int layerHeight = Math.max(1, Math.round((float)height * scaleFactor));
+		Bitmap layer = pool.get(layerWidth, layerHeight, Bitmap.Config.ARGB_8888);
+		try
+		{
+			Canvas layerCanvas = new Canvas(layer);
+			layerCanvas.scale((float)layerWidth / (float)width, (float)layerHeight / (float)height);
+			layerCanvas.drawBitmap(source, null, shadowBounds, scalePaint);
+			CancellationToken.throwIfCancelled(cancellationToken);
+			frameBlur.blur(layer, layer, blurRadius * scaleFactor);
+			CancellationToken.throwIfCancelled(cancellationToken);
+			Paint shadowPaint = new Paint();
+			shadowPaint.setAntiAlias(true);
+			shadowPaint.setFilterBitmap(true);
+			shadowPaint.setColorFilter(new PorterDuffColorFilter(colour, PorterDuff.Mode.SRC_IN));
+			canvas.drawBitmap(layer, null, new Rect(0, 0, width, height), shadowPaint);
+		}
+		finally
+		{
+			pool.put(layer);
+		}
+	}
+
+	/**
+	 * Blurs the source's alpha channel at its own resolution, with the radius
+	 * converted accordingly, and scales the mask into place as it is drawn.
+	 */
+	private void drawPlatformShadow(Canvas canvas, Bitmap source, RectF shadowBounds)
+	{
+		float scaleX = shadowBounds.width() / (float)source.getWidth();
+		float scaleY = shadowBounds.height() / (float)source.getHeight();
+		Paint blurPaint = new Paint();
+		if(blurRadius > 0)
+		{
+			float sourceRadius = blurRadius / Math.max(0.01f, Math.min(scaleX, scaleY));
+			blurPaint.setMaskFilter(new BlurMaskFilter(Shadow.toMaskFilterRadius(sourceRadius), BlurMaskFilter.Blur.NORMAL));
+		}
+		int[] offset = new int[2];
+		Bitmap alpha = source.extractAlpha(blurPaint, offset);
+		if(CancellationToken.isCancelled(cancellationToken))
+		{
+			alpha.recycle();
+			throw new TransformationCancelledException();
+		}
+		RectF maskBounds = new RectF(
+				shadowBounds.left + offset[0] * scaleX,
+				shadowBounds.top + offset[1] * scaleY,
+				shadowBounds.left + (offset[0] + alpha.getWidth()) * scaleX,
+				shadowBounds.top + (offset[1] + alpha.getHeight()) * scaleY);
+		//Alpha bitmaps are drawn in the paint's colour
+		Paint shadowPaint = new Paint();
+		shadowPaint.setAntiAlias(true);
+		shadowPaint.setFilterBitmap(true);
+		shadowPaint.setColor(colour);
+		canvas.drawBitmap(alpha, null, maskBounds, shadowPaint);
+		alpha.recycle();
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof PaddedShadow)
+		{
+			PaddedShadow other = (PaddedShadow) object;
+			return blurRadius == other.blurRadius
+					&& elevation == other.elevation
+					&& angle == other.angle
+					&& colour == other.colour
+					&& engine == other.engine
+					&& cancellationToken == other.cancellationToken;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Util.hashCode(cancellationToken, Util.hashCode(ID.hashCode(),
+				Util.hashCode(blurRadius,
+				Util.hashCode(elevation,
+				Util.hashCode(angle,
+				Util.hashCode(colour,
+				Util.hashCode(engine)))))));
+	}
+
+	@Override
+	public void updateDiskCacheKey(MessageDigest messageDigest)
+	{
+		ArrayList<byte[]> messages = new ArrayList<>();
+
+		messages.add(ID_BYTES);
+		CacheKeys.addVersion(messages, VERSION);
+		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(blurRadius).array());
+		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(elevation).array());
+		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(angle).array());
+		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(colour).array());
+		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(engine).array());
+
+		for(int c = 0; c < messages.size(); c++)
+		{
+			messageDigest.update(messages.get(c));
+		}
+	}
+}
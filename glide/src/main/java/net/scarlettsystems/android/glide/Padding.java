@@ -6,6 +6,7 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.os.Build;
 import android.support.annotation.ColorInt;
 import android.support.annotation.ColorRes;
@@ -28,12 +29,15 @@ import java.util.ArrayList;
  * @version 1.0.0
  */
 @SuppressWarnings("unused, WeakerAccess")
-public class Padding extends BitmapTransformation
+public class Padding extends BitmapTransformation implements StripeTransformation
 {
 	private static final String ID = "net.scarlettsystems.android.transformations.glide.Padding";
 	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 1;
 	private int paddingLeft, paddingRight, paddingTop, paddingBottom;
 	private int colour = Color.argb(0,0,0,0);
+	private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
 
 	/**
 	 * Default constructor.
@@ -108,22 +112,54 @@ public class Padding extends BitmapTransformation
 
 	@Override
 	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		long start = System.nanoTime();
+		Bitmap bitmap;
+		if(HardwareBitmaps.isHardware(source))
+		{
+			bitmap = HardwareBitmaps.draw(pool, source, this);
+		}
+		else
+		{
+			bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+			//Draw to Canvas
+			Canvas canvas = new Canvas(bitmap);
+			drawStripe(canvas, source, 0, source.getHeight(), source.getWidth(), source.getHeight());
+		}
+		TransformationMetrics.record("Padding", "canvas", source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return bitmap;
+	}
+
+	@Override
+	public void getSourceRows(int width, int height, int top, int bottom, int[] rows)
+	{
+		int paddedHeight = Math.max(0, height - (paddingTop + paddingBottom));
+		if(paddedHeight == 0)
+		{
+			rows[0] = 0;
+			rows[1] = 0;
+			return;
+		}
+		//Map back through the scaling, with a row either side for filtering
+		float scale = (float)height / (float)paddedHeight;
+		rows[0] = Math.max(0, (int)Math.floor((top - paddingTop) * scale) - 1);
+		rows[1] = Math.min(height, (int)Math.ceil((bottom - paddingTop) * scale) + 1);
+	}
+
+	@Override
+	public void drawStripe(Canvas canvas, Bitmap input, int inputTop, int inputRows, int width, int height)
 	{
 		//Size Image
-		int paddedWidth = Math.max(0, source.getWidth() - (paddingLeft + paddingRight));
-		int paddedHeight = Math.max(0, source.getHeight() - (paddingTop + paddingBottom));
-		Bitmap bitmap = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
-		Rect bitmapBounds = new Rect(paddingLeft, paddingTop, paddedWidth + paddingLeft, paddedHeight + paddingTop);
-		//Create Image Paint
-		Paint paint = new Paint();
-		paint.setAntiAlias(true);
-		paint.setFilterBitmap(true);
-		paint.setDither(true);
-		//Draw to Canvas
-		Canvas canvas = new Canvas(bitmap);
+		int paddedWidth = Math.max(0, width - (paddingLeft + paddingRight));
+		int paddedHeight = Math.max(0, height - (paddingTop + paddingBottom));
+		float scale = (float)paddedHeight / (float)height;
+		RectF bitmapBounds = new RectF(paddingLeft, paddingTop + inputTop * scale,
+				paddedWidth + paddingLeft, paddingTop + (inputTop + inputRows) * scale);
 		canvas.drawColor(colour);
-		canvas.drawBitmap(source, null, bitmapBounds, paint);
-		return bitmap;
+		if(inputRows > 0)
+		{
+			canvas.drawBitmap(input, new Rect(0, 0, width, inputRows), bitmapBounds, paint);
+		}
 	}
 
 	@Override
@@ -158,6 +194,7 @@ public class Padding extends BitmapTransformation
 		ArrayList<byte[]> messages = new ArrayList<>();
 
 		messages.add(ID_BYTES);
+		CacheKeys.addVersion(messages, VERSION);
 		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(paddingLeft).array());
 		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(paddingRight).array());
 		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(paddingTop).array());
@@ -0,0 +1,112 @@
+package net.scarlettsystems.android.glide;
+
+import android.graphics.Bitmap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * PixelBuffer.java
+ * Reusable per-thread storage for moving pixels between bitmaps and CPU
+ * kernels. Pixels are read and written in slabs of whole rows into an int[]
+ * that is kept between calls, and raw buffers are served from a direct
+ * ByteBuffer that is likewise kept, so kernels do not allocate per call.
+ * <p>
+ * Each thread has its own buffer, obtained with {@link #get()}. Buffers are
+ * bounded in size, so that idle threads hold on to little memory; requests
+ * larger than the bound are served by temporary storage instead.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+final class PixelBuffer
+{
+	/** Size of a slab of rows, small enough to stay in cache. */
+	static final int SLAB_BYTES = 64 * 1024;
+	/** Largest direct buffer kept between calls. */
+	static final int MAX_RETAINED_BYTES = 1024 * 1024;
+	private static final ThreadLocal<PixelBuffer> BUFFERS = new ThreadLocal<PixelBuffer>()
+	{
+		@Override
+		protected PixelBuffer initialValue()
+		{
+			return new PixelBuffer();
+		}
+	};
+	private int[] pixels = new int[0];
+	private ByteBuffer bytes;
+
+	private PixelBuffer(){}
+
+	/**
+	 * Returns the calling thread's buffer. It must not be handed to other threads.
+	 */
+	static PixelBuffer get()
+	{
+		return BUFFERS.get();
+	}
+
+	/**
+	 * Returns how many rows of the given width make up one slab, at least one.
+	 */
+	static int getSlabRows(int width)
+	{
+		return Math.max(1, SLAB_BYTES / (4 * Math.max(1, width)));
+	}
+
+	/**
+	 * Returns the pixel array, grown if necessary to hold the given number of
+	 * rows of the given width. Its contents are undefined until read into.
+	 */
+	int[] getPixels(int width, int rows)
+	{
+		int length = width * rows;
+		if(pixels.length < length)
+		{
+			pixels = new int[length];
+		}
+		return pixels;
+	}
+
+	/**
+	 * Reads rows of the bitmap into the pixel array, row after row from index 0.
+	 *
+	 * @return the pixel array
+	 */
+	int[] read(Bitmap bitmap, int top, int rows)
+	{
+		int width = bitmap.getWidth();
+		int[] array = getPixels(width, rows);
+		bitmap.getPixels(array, 0, width, 0, top, width, rows);
+		return array;
+	}
+
+	/**
+	 * Writes rows from the pixel array, as laid out by read(), into the bitmap.
+	 */
+	void write(Bitmap bitmap, int top, int rows)
+	{
+		int width = bitmap.getWidth();
+		bitmap.setPixels(pixels, 0, width, 0, top, width, rows);
+	}
+
+	/**
+	 * Returns a cleared direct buffer in native byte order with its limit set
+	 * to the given capacity, for use with Bitmap.copyPixelsToBuffer and
+	 * copyPixelsFromBuffer. Buffers up to MAX_RETAINED_BYTES are reused.
+	 */
+	ByteBuffer getBytes(int capacity)
+	{
+		if(capacity > MAX_RETAINED_BYTES)
+		{
+			return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+		}
+		if(bytes == null || bytes.capacity() < capacity)
+		{
+			bytes = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+		}
+		bytes.clear();
+		bytes.limit(capacity);
+		return bytes;
+	}
+}
@@ -0,0 +1,83 @@
+package net.scarlettsystems.android.glide;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.request.RequestOptions;
+
+/**
+ * Progressive.java
+ * Applies a transformation in two stages: a heavily downsampled preview that
+ * is cheap to compute, followed by the full quality result. The preview is
+ * loaded as a Glide thumbnail request, so it is displayed as soon as it is
+ * ready and replaced once the full result arrives. Both stages are cached
+ * separately.
+ * <pre>
+ * Progressive.apply(Glide.with(this).load(url), new GaussianBlur(this, 40)).into(imageView);
+ * </pre>
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see ScalableTransformation
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class Progressive
+{
+	/** Default preview size relative to the full request. */
+	public static final float DEFAULT_PREVIEW_MULTIPLIER = 0.125f;
+
+	private Progressive(){}
+
+	/**
+	 * Applies the transformation to the request, with a preview at one eighth
+	 * of the full size.
+	 *
+	 * @param request request to apply the transformation to
+	 * @param transformation transformation to apply
+	 * @param <T> resource type of the request
+	 * @return the request, with the preview set as its thumbnail
+	 */
+	public static <T> RequestBuilder<T> apply(RequestBuilder<T> request, Transformation<Bitmap> transformation)
+	{
+		return apply(request, transformation, DEFAULT_PREVIEW_MULTIPLIER);
+	}
+
+	/**
+	 * Applies the transformation to the request, with a preview of the given
+	 * size relative to the full request. If the transformation is a
+	 * ScalableTransformation, the preview uses a copy scaled to match, so
+	 * that blur radii and offsets look the same at both sizes.
+	 *
+	 * @param request request to apply the transformation to
+	 * @param transformation transformation to apply
+	 * @param previewMultiplier preview size between 0 and 1
+	 * @param <T> resource type of the request
+	 * @return the request, with the preview set as its thumbnail
+	 */
+	public static <T> RequestBuilder<T> apply(RequestBuilder<T> request, Transformation<Bitmap> transformation, float previewMultiplier)
+	{
+		float multiplier = Math.max(0.01f, Math.min(1f, previewMultiplier));
+		RequestBuilder<T> preview = request.clone()
+				.apply(RequestOptions.sizeMultiplierOf(multiplier).transform(scale(transformation, multiplier)));
+		return request
+				.apply(RequestOptions.bitmapTransform(transformation))
+				.thumbnail(preview);
+	}
+
+	/**
+	 * Returns the transformation scaled for a source of the given relative size.
+	 *
+	 * @param transformation transformation to scale
+	 * @param factor relative size of the source
+	 * @return scaled transformation, or the transformation itself if it is not scalable
+	 */
+	public static Transformation<Bitmap> scale(Transformation<Bitmap> transformation, float factor)
+	{
+		if(transformation instanceof ScalableTransformation)
+		{
+			return ((ScalableTransformation)transformation).scaledBy(factor);
+		}
+		return transformation;
+	}
+}
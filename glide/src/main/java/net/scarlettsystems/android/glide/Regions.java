@@ -0,0 +1,124 @@
+package net.scarlettsystems.android.glide;
+
+import android.graphics.Rect;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Regions.java
+ * Helpers shared by transformations that can be limited to one or more
+ * rectangular regions of interest. A null region array means the whole image.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+final class Regions
+{
+	private Regions(){}
+
+	/**
+	 * Returns a defensive copy of the given regions, or null if none are given,
+	 * so that later changes to the caller's Rects do not alter cache keys.
+	 */
+	static Rect[] copyOf(Rect[] regions)
+	{
+		if(regions == null || regions.length == 0){return null;}
+		Rect[] copy = new Rect[regions.length];
+		for(int c = 0; c < regions.length; c++)
+		{
+			copy[c] = new Rect(regions[c]);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the regions clipped to an image of the given dimensions,
+	 * leaving out any that fall outside it.
+	 */
+	static Rect[] clip(Rect[] regions, int width, int height)
+	{
+		ArrayList<Rect> clipped = new ArrayList<>(regions.length);
+		for(Rect region : regions)
+		{
+			Rect rect = new Rect(region);
+			if(rect.intersect(0, 0, width, height) && !rect.isEmpty())
+			{
+				clipped.add(rect);
+			}
+		}
+		return clipped.toArray(new Rect[clipped.size()]);
+	}
+
+	/**
+	 * Returns the given region grown by the halo on every side, clipped to
+	 * an image of the given dimensions.
+	 */
+	static Rect expand(Rect region, int halo, int width, int height)
+	{
+		Rect rect = new Rect(region);
+		rect.inset(-halo, -halo);
+		rect.intersect(0, 0, width, height);
+		return rect;
+	}
+
+	/**
+	 * Returns the regions scaled by the given factor, for scaled sources.
+	 */
+	static Rect[] scale(Rect[] regions, float factor)
+	{
+		if(regions == null){return null;}
+		Rect[] scaled = new Rect[regions.length];
+		for(int c = 0; c < regions.length; c++)
+		{
+			Rect region = regions[c];
+			scaled[c] = new Rect(
+					(int)Math.floor(region.left * factor),
+					(int)Math.floor(region.top * factor),
+					(int)Math.ceil(region.right * factor),
+					(int)Math.ceil(region.bottom * factor));
+		}
+		return scaled;
+	}
+
+	/**
+	 * Returns the number of bytes of the largest ARGB_8888 scratch bitmap
+	 * needed to process any one region with the given halo.
+	 */
+	static long largestScratchBytes(Rect[] regions, int halo, int width, int height)
+	{
+		long largest = 0;
+		for(Rect region : regions)
+		{
+			Rect rect = expand(region, halo, width, height);
+			largest = Math.max(largest, MemoryPlanner.argbBytes(rect.width(), rect.height()));
+		}
+		return largest;
+	}
+
+	static boolean equals(Rect[] a, Rect[] b)
+	{
+		return Arrays.equals(a, b);
+	}
+
+	static int hashCode(Rect[] regions)
+	{
+		return Arrays.hashCode(regions);
+	}
+
+	/**
+	 * Adds the regions to a disk cache key. Nothing is added when the whole
+	 * image is processed, so existing keys are unchanged.
+	 */
+	static void addTo(ArrayList<byte[]> messages, Rect[] regions)
+	{
+		if(regions == null){return;}
+		ByteBuffer buffer = ByteBuffer.allocate(regions.length * 4 * Integer.SIZE/Byte.SIZE);
+		for(Rect region : regions)
+		{
+			buffer.putInt(region.left).putInt(region.top).putInt(region.right).putInt(region.bottom);
+		}
+		messages.add(buffer.array());
+	}
+}
@@ -0,0 +1,22 @@
+package net.scarlettsystems.android.glide;
+
+/**
+ * ResolutionIndependent.java
+ * A transformation whose result, when downsampled, equals the result of
+ * applying it to the downsampled source. Per pixel colour effects and masks
+ * sized as a fraction of the image qualify, while effects measured in pixels,
+ * such as blurs and shadows, do not.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see MultiSize
+ */
+public interface ResolutionIndependent
+{
+	/**
+	 * Returns whether the transformation, as currently configured, commutes with scaling.
+	 *
+	 * @return true if the result may be produced by downsampling a larger result
+	 */
+	boolean isResolutionIndependent();
+}
@@ -0,0 +1,27 @@
+package net.scarlettsystems.android.glide;
+
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.load.Transformation;
+
+/**
+ * ScalableTransformation.java
+ * A transformation whose parameters are measured in pixels, and which can
+ * therefore produce an equivalent looking result on a source that has been
+ * scaled, for example a low resolution preview of the same image.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see Progressive
+ */
+public interface ScalableTransformation
+{
+	/**
+	 * Returns a copy of this transformation with its pixel measured
+	 * parameters scaled by the given factor.
+	 *
+	 * @param factor scale of the source relative to full size
+	 * @return scaled transformation
+	 */
+	Transformation<Bitmap> scaledBy(float factor);
+}
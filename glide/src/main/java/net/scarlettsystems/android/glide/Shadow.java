@@ -2,19 +2,19 @@ package net.scarlettsystems.android.glide;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BlurMaskFilter;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.os.Build;
 import android.support.annotation.ColorInt;
 import android.support.annotation.ColorRes;
 import android.support.annotation.IntDef;
-import android.support.v8.renderscript.Allocation;
-import android.support.v8.renderscript.Element;
-import android.support.v8.renderscript.RenderScript;
-import android.support.v8.renderscript.ScriptIntrinsicBlur;
+import android.support.v8.renderscript.RSRuntimeException;
 
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
@@ -34,21 +34,34 @@ import java.util.ArrayList;
  * <p>
  * Images should be padded with transparent pixels by at least the
  * blur radius plus the elevation in order for the drawn shadow to
- * display properly without clipping. See: Padding
+ * display properly without clipping. See: Padding, or PaddedShadow,
+ * which works out the padding itself and draws both in one pass.
+ * <p>
+ * The shadow can be rendered by RenderScript or by the platform's
+ * BlurMaskFilter, see {@link #setEngine(int)}. The engine that ran is
+ * reported through TransformationMetrics.
  *
  * @author Shane Scarlett
  * @version 1.0.0
  * @see Padding
+ * @see PaddedShadow
  */
 @SuppressWarnings("unused, WeakerAccess")
-public class Shadow extends BitmapTransformation
+public class Shadow extends BitmapTransformation implements HeavyTransformation, ScalableTransformation
 {
 	private static final String ID = "net.scarlettsystems.android.transformations.glide.Shadow";
 	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 2;
 	private Context mContext;
 	private float blurRadius, elevation, angle;
 	private int colour;
-	private static final float RENDERSCRIPT_MAX_BLUR_RADIUS = 25.0f;
+	private int engine;
+	private CancellationToken cancellationToken;
+	private BlurEngine.FrameBlur frameBlur;
+	private final Paint scalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private static final float RENDERSCRIPT_MAX_BLUR_RADIUS = BlurEngine.RENDERSCRIPT_MAX_BLUR_RADIUS;
+	static volatile boolean renderScriptUnavailable = false;
 
 	@IntDef({EAST, NORTHEAST, NORTH, NORTHWEST, WEST, SOUTHWEST, SOUTH, SOUTHEAST})
 	@Retention(RetentionPolicy.SOURCE)
@@ -63,6 +76,14 @@ public class Shadow extends BitmapTransformation
 	public static final int SOUTH = 6;
 	public static final int SOUTHEAST = 7;
 
+	@IntDef({ENGINE_AUTO, ENGINE_RENDERSCRIPT, ENGINE_PLATFORM})
+	@Retention(RetentionPolicy.SOURCE)
+	public @interface Engine {}
+
+	public static final int ENGINE_AUTO = 0;
+	public static final int ENGINE_RENDERSCRIPT = 1;
+	public static final int ENGINE_PLATFORM = 2;
+
 	/**
 	 * Default constructor.
 	 * The shadow is set at 0 elevation and 0 blur, with black colour at 50%
@@ -77,6 +98,8 @@ public class Shadow extends BitmapTransformation
 		this.elevation = 0;
 		this.angle = 0;
 		this.colour = Color.argb(128,0,0,0);
+		this.engine = ENGINE_AUTO;
+		this.frameBlur = new BlurEngine.FrameBlur(context);
 	}
 
 	/**
@@ -166,6 +189,48 @@ public class Shadow extends BitmapTransformation
 		return this;
 	}
 
+	/**
+	 * Sets the engine used to render the shadow.
+	 * ENGINE_RENDERSCRIPT blurs the image with RenderScript, while ENGINE_PLATFORM
+	 * blurs its alpha channel with the platform's BlurMaskFilter and does not
+	 * depend on RenderScript at all. ENGINE_AUTO, the default, uses RenderScript
+	 * while it is available. The engine is never switched to fit the
+	 * MemoryPlanner budget, as the engines' results differ slightly. If
+	 * RenderScript fails the platform engine is used instead, regardless of
+	 * the setting.
+	 *
+	 * @param engine the engine as an @Engine
+	 * @return returns self
+	 */
+	public Shadow setEngine(@Engine int engine)
+	{
+		switch(engine)
+		{
+			case ENGINE_AUTO:
+			case ENGINE_RENDERSCRIPT:
+			case ENGINE_PLATFORM:
+				this.engine = engine;
+				return this;
+			default:
+				throw new IllegalArgumentException("Invalid Engine");
+		}
+	}
+
+	/**
+	 * Sets a token that stops the shadow rendering early once cancelled, for
+	 * example when the view it was requested for is recycled.
+	 * Loads with different tokens are not merged by Glide, so cancelling one
+	 * never aborts another.
+	 *
+	 * @param token cancellation token, or null for none
+	 * @return returns self
+	 */
+	public Shadow setCancellationToken(CancellationToken token)
+	{
+		this.cancellationToken = token;
+		return this;
+	}
+
 	private float getAngle(@Direction int d)
 	{
 		switch(d)
@@ -191,62 +256,205 @@ public class Shadow extends BitmapTransformation
 		}
 	}
 
+	/**
+	 * Chooses the shadow strategy for a source of the given dimensions.
+	 * ALPHA_MASK runs the platform engine, the others RenderScript. Each engine
+	 * has a single strategy, so the budget never changes the output.
+	 */
+	MemoryPlanner.Plan plan(int width, int height)
+	{
+		if(engine == ENGINE_PLATFORM || (engine == ENGINE_AUTO && renderScriptUnavailable))
+		{
+			return MemoryPlanner.choose(MemoryPlanner.alphaMask(width, height, toMaskFilterRadius(blurRadius)));
+		}
+		//Output bitmap plus either a full-size blurred copy, or a downscaled one, and its allocations
+		float scaleFactor = Math.min(1f, RENDERSCRIPT_MAX_BLUR_RADIUS / blurRadius);
+		return MemoryPlanner.choose(new MemoryPlanner.Plan(
+				scaleFactor >= 1f ? MemoryPlanner.STRATEGY_FULL : MemoryPlanner.STRATEGY_DOWNSAMPLED,
+				MemoryPlanner.argbBytes(width, height) + 3 * MemoryPlanner.scaledArgbBytes(width, height, scaleFactor),
+				scaleFactor));
+	}
+
+	@Override
+	public Shadow scaledBy(float factor)
+	{
+		return new Shadow(mContext)
+				.setBlurRadius(blurRadius * factor)
+				.setElevation(elevation * factor)
+				.setAngle(angle)
+				.setShadowColour(colour)
+				.setEngine(engine)
+				.setCancellationToken(cancellationToken);
+	}
+
+	@Override
+	public boolean isHeavy(int width, int height)
+	{
+		return (long)width * (long)height >= Offloaded.HEAVY_PIXEL_COUNT;
+	}
+
 	@Override
 	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
 	{
-		Bitmap bitmap = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
-		Bitmap shadow = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+		if(HardwareBitmaps.isHardware(source))
+		{
+			//The shadow is blurred from the source's pixels, so work on one software copy
+			Bitmap copy = HardwareBitmaps.softwareCopy(source);
+			Bitmap bitmap = null;
+			try
+			{
+				bitmap = transform(pool, copy, outWidth, outHeight);
+				return bitmap;
+			}
+			finally
+			{
+				if(bitmap != copy)
+				{
+					pool.put(copy);
+				}
+			}
+		}
+		long start = System.nanoTime();
+		CancellationToken.throwIfCancelled(cancellationToken);
+		MemoryPlanner.Plan plan = plan(source.getWidth(), source.getHeight());
+		Bitmap bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
 		//Calculate Shadow Offset
 		float shadowX = elevation * (float)Math.cos(Math.toRadians(angle));
 		float shadowY = -(elevation * (float)Math.sin(Math.toRadians(angle)));
 
+		Canvas canvas = new Canvas(bitmap);
+		canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+		int ran = ENGINE_PLATFORM;
+		try
+		{
+			if(plan.getStrategy() != MemoryPlanner.STRATEGY_ALPHA_MASK)
+			{
+				try
+				{
+					drawRenderScriptShadow(pool, canvas, source, shadowX, shadowY, plan.getScale());
+					ran = ENGINE_RENDERSCRIPT;
+				}
+				catch(RSRuntimeException e)
+				{
+					renderScriptUnavailable = true;
+					plan = MemoryPlanner.alphaMask(source.getWidth(), source.getHeight(), toMaskFilterRadius(blurRadius));
+				}
+			}
+			if(ran == ENGINE_PLATFORM)
+			{
+				drawPlatformShadow(canvas, source, shadowX, shadowY);
+			}
+		}
+		catch(TransformationCancelledException e)
+		{
+			pool.put(bitmap);
+			throw e;
+		}
+		canvas.drawBitmap(source, 0, 0, null);
+
+		//Output
+		TransformationMetrics.record("Shadow", getEngineName(ran), plan,
+				source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return bitmap;
+	}
+
+	private void drawRenderScriptShadow(BitmapPool pool, Canvas canvas, Bitmap source, float shadowX, float shadowY, float scaleFactor)
+	{
 		//Create Shadow Paint
 		Paint shadowPaint = new Paint();
 		shadowPaint.setAntiAlias(true);
+		shadowPaint.setFilterBitmap(true);
 		shadowPaint.setColorFilter(new PorterDuffColorFilter(colour, PorterDuff.Mode.SRC_IN));
 
-		if(blurRadius <= RENDERSCRIPT_MAX_BLUR_RADIUS)
+		if(scaleFactor >= 1f)
 		{
-			//Apply Blur
-			blur(source, shadow, blurRadius);
-			//Draw to Canvas
-			Canvas canvas = new Canvas(bitmap);
-			canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-			canvas.drawBitmap(shadow, shadowX, shadowY, shadowPaint);
-			canvas.drawBitmap(source, 0, 0, null);
+			Bitmap shadow = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+			try
+			{
+				//Apply Blur
+				blur(source, shadow, blurRadius);
+				CancellationToken.throwIfCancelled(cancellationToken);
+				//Draw to Canvas
+				canvas.drawBitmap(shadow, shadowX, shadowY, shadowPaint);
+			}
+			finally
+			{
+				pool.put(shadow);
+			}
 		}
 		else
 		{
 			//Scale
-			float scaleFactor = (RENDERSCRIPT_MAX_BLUR_RADIUS / blurRadius);
 			int scaledWidth = Math.max(1, Math.round((float) source.getWidth() * scaleFactor));
 			int scaledHeight = Math.max(1, Math.round((float) source.getHeight() * scaleFactor));
-			Bitmap scaled = Bitmap.createScaledBitmap(source, scaledWidth, scaledHeight, true);
-			//Apply Blur
-			blur(scaled, scaled, RENDERSCRIPT_MAX_BLUR_RADIUS);
-			//Draw to Canvas
-			Canvas canvas = new Canvas(bitmap);
-			shadow = Bitmap.createScaledBitmap(scaled, source.getWidth(), source.getHeight(), true);
-			canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-			canvas.drawBitmap(shadow, shadowX, shadowY, shadowPaint);
-			canvas.drawBitmap(source, 0, 0, null);
+			Bitmap scaled = pool.get(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
+			try
+			{
+				new Canvas(scaled).drawBitmap(source, null, new Rect(0, 0, scaledWidth, scaledHeight), scalePaint);
+				CancellationToken.throwIfCancelled(cancellationToken);
+				//Apply Blur
+				blur(scaled, scaled, blurRadius * scaleFactor);
+				CancellationToken.throwIfCancelled(cancellationToken);
+				//Draw to Canvas, re-inflating the shadow as it is drawn
+				RectF shadowBounds = new RectF(shadowX, shadowY, shadowX + source.getWidth(), shadowY + source.getHeight());
+				canvas.drawBitmap(scaled, null, shadowBounds, shadowPaint);
+			}
+			finally
+			{
+				pool.put(scaled);
+			}
 		}
+	}
 
-		//Output
-		shadow.recycle();
-		return bitmap;
+	private void drawPlatformShadow(Canvas canvas, Bitmap source, float shadowX, float shadowY)
+	{
+		//Blur the alpha channel only, the offset accounts for the blur's spread
+		Paint blurPaint = new Paint();
+		if(blurRadius > 0)
+		{
+			blurPaint.setMaskFilter(new BlurMaskFilter(toMaskFilterRadius(blurRadius), BlurMaskFilter.Blur.NORMAL));
+		}
+		int[] offset = new int[2];
+		Bitmap alpha = source.extractAlpha(blurPaint, offset);
+		if(CancellationToken.isCancelled(cancellationToken))
+		{
+			alpha.recycle();
+			throw new TransformationCancelledException();
+		}
+		//Alpha bitmaps are drawn in the paint's colour
+		Paint shadowPaint = new Paint();
+		shadowPaint.setAntiAlias(true);
+		shadowPaint.setColor(colour);
+		canvas.drawBitmap(alpha, shadowX + offset[0], shadowY + offset[1], shadowPaint);
+		alpha.recycle();
+	}
+
+	/**
+	 * Converts a RenderScript blur radius into the BlurMaskFilter radius of the
+	 * same standard deviation, so both engines draw shadows of the same softness.
+	 * RenderScript uses sigma = 0.4r + 0.6, while Skia uses sigma = 0.57735r + 0.5.
+	 */
+	static float toMaskFilterRadius(float radius)
+	{
+		return Math.max(0.1f, (0.4f * radius + 0.1f) / 0.57735f);
+	}
+
+	static String getEngineName(@Engine int engine)
+	{
+		switch(engine)
+		{
+			case ENGINE_RENDERSCRIPT:
+				return "renderscript";
+			case ENGINE_PLATFORM:
+				return "platform";
+			default:
+				return "auto";
+		}
 	}
 
 	private void blur(Bitmap bitmap, Bitmap copyTo, float radius)
 	{
-		final RenderScript rs = RenderScript.create(mContext);
-		final Allocation input = Allocation.createFromBitmap( rs, bitmap, Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT );
-		final Allocation output = Allocation.createTyped( rs, input.getType() );
-		final ScriptIntrinsicBlur script = ScriptIntrinsicBlur.create( rs, Element.U8_4( rs ) );
-		script.setRadius( radius );
-		script.setInput( input );
-		script.forEach( output );
-		output.copyTo( copyTo );
+		frameBlur.blur(bitmap, copyTo, radius);
 	}
 
 	@Override
@@ -258,7 +466,9 @@ public class Shadow extends BitmapTransformation
 			return blurRadius == other.blurRadius
 					&& elevation == other.elevation
 					&& angle == other.angle
-					&& colour == other.colour;
+					&& colour == other.colour
+					&& engine == other.engine
+					&& cancellationToken == other.cancellationToken;
 		}
 		return false;
 	}
@@ -266,11 +476,12 @@ public class Shadow extends BitmapTransformation
 	@Override
 	public int hashCode()
 	{
-		return Util.hashCode(ID.hashCode(),
+		return Util.hashCode(cancellationToken, Util.hashCode(ID.hashCode(),
 				Util.hashCode(blurRadius,
 				Util.hashCode(elevation,
 				Util.hashCode(angle,
-				Util.hashCode(colour)))));
+				Util.hashCode(colour,
+				Util.hashCode(engine)))))));
 	}
 
 	@Override
@@ -279,11 +490,12 @@ public class Shadow extends BitmapTransformation
 		ArrayList<byte[]> messages = new ArrayList<>();
 
 		messages.add(ID_BYTES);
+		CacheKeys.addVersion(messages, VERSION);
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(blurRadius).array());
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(elevation).array());
 		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(angle).array());
 		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(colour).array());
-		messages.add(ByteBuffer.allocate(Long.SIZE).putLong(System.currentTimeMillis()).array());
+		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(engine).array());
 
 		for(int c = 0; c < messages.size(); c++)
 		{
@@ -0,0 +1,504 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.os.Build;
+import android.support.annotation.ColorInt;
+import android.support.annotation.ColorRes;
+import android.support.annotation.IntDef;
+import android.support.v4.util.LruCache;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.util.Util;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+
+/**
+ * Shape.java
+ * Crops the image by an ellipse, rounded rectangle or superellipse, such as
+ * the squircle of app icons. The shape is centred in the image.
+ * <p>
+ * Ellipses and rounded rectangles are drawn into their masks by the platform.
+ * Superellipses have no platform primitive, so their edges are anti-aliased
+ * analytically: each pixel of the mask is given the coverage of the shape
+ * from its distance to the edge. Masks are cached per size and shape, so
+ * repeated crops, such as the items of a list or the frames of an animated
+ * image, only composite the image through the mask.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see Ellipse
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class Shape extends BitmapTransformation implements ResolutionIndependent
+{
+	private static final String ID = "net.scarlettsystems.android.transformations.glide.Shape";
+	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 2;
+	private static final float SQUIRCLE_EXPONENT = 4f;
+	private static final MaskCache MASKS = new MaskCache((int)Math.min(4 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 64));
+	private static String largeMaskKey;
+	private static Bitmap largeMask;
+	private int kind;
+	private float xSize, ySize;
+	private boolean isFraction;
+	private float cornerRadius;
+	private boolean isCornerFraction;
+	private float exponent;
+	private float angle;
+	private int colour;
+
+	@IntDef({ELLIPSE, ROUNDED_RECT, SUPERELLIPSE})
+	@Retention(RetentionPolicy.SOURCE)
+	public @interface Kind {}
+
+	public static final int ELLIPSE = 0;
+	public static final int ROUNDED_RECT = 1;
+	public static final int SUPERELLIPSE = 2;
+
+	/**
+	 * Returns transformation that crops the image by the given kind of shape,
+	 * filling the whole image with a transparent background. Rounded rectangles
+	 * have corners of a quarter of their smaller side and superellipses form
+	 * a squircle by default.
+	 *
+	 * @param kind the kind of shape as a @Kind
+	 */
+	public Shape(@Kind int kind)
+	{
+		switch(kind)
+		{
+			case ELLIPSE:
+			case ROUNDED_RECT:
+			case SUPERELLIPSE:
+				this.kind = kind;
+				break;
+			default:
+				throw new IllegalArgumentException("Invalid Kind");
+		}
+		this.xSize = 1f;
+		this.ySize = 1f;
+		this.isFraction = true;
+		this.cornerRadius = 0.25f;
+		this.isCornerFraction = true;
+		this.exponent = SQUIRCLE_EXPONENT;
+		this.angle = 0;
+		this.colour = Color.argb(0,0,0,0);
+	}
+
+	/**
+	 * Sets the width and height of the shape in pixels.
+	 *
+	 * @param x width of the shape
+	 * @param y height of the shape
+	 * @return returns self
+	 */
+	public Shape setSize(int x, int y)
+	{
+		this.isFraction = false;
+		this.xSize = Math.max(0, x);
+		this.ySize = Math.max(0, y);
+		return this;
+	}
+
+	/**
+	 * Sets the width and height of the shape as fractions of the image's
+	 * width and height. The shape fills the image by default.
+	 *
+	 * @param x width of the shape as a portion of the image's width
+	 * @param y height of the shape as a portion of the image's height
+	 * @return returns self
+	 */
+	public Shape setSizeFraction(float x, float y)
+	{
+		this.isFraction = true;
+		this.xSize = Math.max(0f, Math.min(1f, x));
+		this.ySize = Math.max(0f, Math.min(1f, y));
+		return this;
+	}
+
+	/**
+	 * Sets the corner radius of a rounded rectangle in pixels.
+	 *
+	 * @param radius corner radius in pixels
+	 * @return returns self
+	 */
+	public Shape setCornerRadius(float radius)
+	{
+		this.isCornerFraction = false;
+		this.cornerRadius = Math.max(0f, radius);
+		return this;
+	}
+
+	/**
+	 * Sets the corner radius of a rounded rectangle as a fraction of the
+	 * shape's smaller side, up to 0.5 for fully rounded ends.
+	 *
+	 * @param fraction corner radius as a portion of the shape's smaller side
+	 * @return returns self
+	 */
+	public Shape setCornerRadiusFraction(float fraction)
+	{
+		this.isCornerFraction = true;
+		this.cornerRadius = Math.max(0f, Math.min(0.5f, fraction));
+		return this;
+	}
+
+	/**
+	 * Sets the exponent of a superellipse. An exponent of 2 gives an ellipse,
+	 * larger exponents approach a rectangle. The default of 4 gives a squircle.
+	 *
+	 * @param exponent superellipse exponent, at least 1
+	 * @return returns self
+	 */
+	public Shape setExponent(float exponent)
+	{
+		this.exponent = Math.max(1f, exponent);
+		return this;
+	}
+
+	/**
+	 * Sets the angle at which the shape is rotated about its centre.
+	 * Positive angles represent counter-clockwise rotation.
+	 *
+	 * @param angle angle of rotation in degrees
+	 * @return returns self
+	 */
+	public Shape setAngle(float angle)
+	{
+		this.angle = angle;
+		return this;
+	}
+
+	/**
+	 * Sets colour of the cropped background.
+	 * Background is transparent by default.
+	 *
+	 * @param colour the colour as a @ColorInt
+	 * @return returns self
+	 */
+	public Shape setColour(@ColorInt int colour)
+	{
+		this.colour = colour;
+		return this;
+	}
+
+	/**
+	 * Sets colour of the cropped background by resource.
+	 * Background is transparent by default.
+	 *
+	 * @param res the colour as a @ColorRes
+	 * @return returns self
+	 */
+	public Shape setColourRes(@ColorRes int res, Context con)
+	{
+		if(Build.VERSION.SDK_INT < 23)
+		{
+			this.colour = con.getResources().getColor(res);
+		}
+		else
+		{
+			this.colour = con.getResources().getColor(res, null);
+		}
+		return this;
+	}
+
+	/**
+	 * Removes all cached masks.
+	 */
+	public static void clearMaskCache()
+	{
+		MASKS.evictAll();
+		synchronized(Shape.class)
+		{
+			largeMaskKey = null;
+			largeMask = null;
+		}
+	}
+
+	/**
+	 * Sets the maximum number of bytes used by cached masks.
+	 * Defaults to 4MB, or less on small heaps.
+	 *
+	 * @param bytes cache size in bytes
+	 */
+	public static void setMaskCacheSize(int bytes)
+	{
+		MASKS.resize(Math.max(1, bytes));
+	}
+
+	@Override
+	public boolean isResolutionIndependent()
+	{
+		return isFraction && (kind != ROUNDED_RECT || isCornerFraction);
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		long start = System.nanoTime();
+		int width = source.getWidth();
+		int height = source.getHeight();
+		float shapeWidth = isFraction ? xSize * width : xSize;
+		float shapeHeight = isFraction ? ySize * height : ySize;
+		float radius = isCornerFraction ? cornerRadius * Math.min(shapeWidth, shapeHeight) : cornerRadius;
+		Bitmap mask = getMask(kind, width, height, shapeWidth, shapeHeight,
+				kind == ROUNDED_RECT ? radius : 0f, kind == SUPERELLIPSE ? exponent : 0f, angle);
+		Bitmap bitmap = composite(pool, source, mask, colour);
+		TransformationMetrics.record("Shape", "mask", width, height, System.nanoTime() - start);
+		return bitmap;
+	}
+
+	/**
+	 * Composites the source through the mask into a new bitmap. Hardware
+	 * sources are composited by the GPU where possible.
+	 */
+	static Bitmap composite(BitmapPool pool, Bitmap source, final Bitmap mask, final int colour)
+	{
+		if(HardwareBitmaps.isHardware(source))
+		{
+			return HardwareBitmaps.draw(pool, source, new HardwareBitmaps.Drawing()
+			{
+				@Override
+				public void draw(Canvas canvas, Bitmap input)
+				{
+					composite(canvas, input, mask, colour);
+				}
+			});
+		}
+		Bitmap bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+		composite(new Canvas(bitmap), source, mask, colour);
+		return bitmap;
+	}
+
+	/**
+	 * Draws the source through the mask in one pass, the mask's coverage
+	 * taking its colour from the source through a shader, then fills the
+	 * background behind it if it is not transparent.
+	 */
+	static void composite(Canvas canvas, Bitmap source, Bitmap mask, int colour)
+	{
+		composite(canvas, source, 0, mask, colour);
+	}
+
+	/**
+	 * Composites as above from a source holding the image's rows from
+	 * sourceTop onwards, such as the input of a stripe. The canvas should be
+	 * clipped to the rows the source holds.
+	 */
+	static void composite(Canvas canvas, Bitmap source, int sourceTop, Bitmap mask, int colour)
+	{
+		BitmapShader shader = new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+		if(sourceTop != 0)
+		{
+			Matrix matrix = new Matrix();
+			matrix.setTranslate(0, sourceTop);
+			shader.setLocalMatrix(matrix);
+		}
+		Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+		paint.setShader(shader);
+		canvas.drawBitmap(mask, 0, 0, paint);
+		if(Color.alpha(colour) != 0)
+		{
+			canvas.drawColor(colour, PorterDuff.Mode.DST_OVER);
+		}
+	}
+
+	/**
+	 * Returns the cached ALPHA_8 coverage mask of a shape centred in an image
+	 * of the given dimensions, creating it if necessary. Masks are shared and
+	 * must not be modified or recycled. Masks larger than the whole cache are
+	 * not cached, rather than evicting every other mask; only the last one is
+	 * kept, so that the stripes of one large image share it.
+	 *
+	 * @param cornerRadius corner radius of a rounded rectangle, otherwise ignored
+	 * @param exponent exponent of a superellipse, otherwise ignored
+	 */
+	static Bitmap getMask(@Kind int kind, int width, int height, float shapeWidth, float shapeHeight,
+						  float cornerRadius, float exponent, float angle)
+	{
+		String key = kind + ":" + width + "x" + height + ":" + shapeWidth + "x" + shapeHeight
+				+ ":" + cornerRadius + ":" + exponent + ":" + angle;
+		Bitmap mask = MASKS.get(key);
+		if(mask != null){return mask;}
+		synchronized(Shape.class)
+		{
+			if(key.equals(largeMaskKey)){return largeMask;}
+		}
+		mask = createMask(kind, width, height, shapeWidth, shapeHeight, cornerRadius, exponent, angle);
+		if(mask.getRowBytes() * mask.getHeight() <= MASKS.maxSize())
+		{
+			MASKS.put(key, mask);
+		}
+		else
+		{
+			synchronized(Shape.class)
+			{
+				largeMaskKey = key;
+				largeMask = mask;
+			}
+		}
+		return mask;
+	}
+
+	private static Bitmap createMask(int kind, int width, int height, float shapeWidth, float shapeHeight,
+									 float cornerRadius, float exponent, float angle)
+	{
+		if(kind != SUPERELLIPSE)
+		{
+			return drawMask(kind, width, height, shapeWidth, shapeHeight, cornerRadius, angle);
+		}
+		Bitmap mask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+		int stride = mask.getRowBytes();
+		ByteBuffer coverage = PixelBuffer.get().getBytes(stride * height);
+		float a = shapeWidth / 2f;
+		float b = shapeHeight / 2f;
+		float cos = (float)Math.cos(Math.toRadians(angle));
+		float sin = (float)Math.sin(Math.toRadians(angle));
+		//A superellipse is symmetric about its centre, so each pixel of the top half gives one of the bottom
+		int halfRows = (height + 1) / 2;
+		for(int y = 0; y < halfRows; y++)
+		{
+			float py = y + 0.5f - height / 2f;
+			for(int x = 0; x < width; x++)
+			{
+				float px = x + 0.5f - width / 2f;
+				//Rotate into the shape's frame, where each quadrant is the same
+				float ux = Math.abs(cos * px - sin * py);
+				float uy = Math.abs(sin * px + cos * py);
+				float distance = superellipseDistance(ux, uy, a, b, exponent);
+				//A pixel half inside the edge is half covered
+				int value = Math.round(Math.max(0f, Math.min(1f, 0.5f - distance)) * 255f);
+				coverage.put(y * stride + x, (byte)value);
+				coverage.put((height - 1 - y) * stride + (width - 1 - x), (byte)value);
+			}
+		}
+		mask.copyPixelsFromBuffer(coverage);
+		return mask;
+	}
+
+	/**
+	 * Draws the mask of an ellipse or rounded rectangle with the platform's
+	 * anti-aliased primitives, which are far faster than evaluating each pixel.
+	 */
+	private static Bitmap drawMask(int kind, int width, int height, float shapeWidth, float shapeHeight,
+								   float cornerRadius, float angle)
+	{
+		Bitmap mask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+		Canvas canvas = new Canvas(mask);
+		Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		float left = (width - shapeWidth) / 2f;
+		float top = (height - shapeHeight) / 2f;
+		RectF bounds = new RectF(left, top, left + shapeWidth, top + shapeHeight);
+		canvas.rotate(-angle, width / 2f, height / 2f);
+		if(kind == ROUNDED_RECT)
+		{
+			float radius = Math.min(cornerRadius, Math.min(shapeWidth, shapeHeight) / 2f);
+			canvas.drawRoundRect(bounds, radius, radius, paint);
+		}
+		else
+		{
+			canvas.drawOval(bounds, paint);
+		}
+		return mask;
+	}
+
+	/**
+	 * Signed distance to a superellipse, estimated from its implicit function
+	 * and gradient, which is accurate near the edge where coverage is decided.
+	 */
+	private static float superellipseDistance(float x, float y, float a, float b, float n)
+	{
+		if(a <= 0f || b <= 0f){return Float.POSITIVE_INFINITY;}
+		double nx = x / a;
+		double ny = y / b;
+		double f = Math.pow(nx, n) + Math.pow(ny, n) - 1.0;
+		double gradient = Math.hypot(n * Math.pow(nx, n - 1) / a, n * Math.pow(ny, n - 1) / b);
+		return gradient > 0.0 ? (float)(f / gradient) : Float.NEGATIVE_INFINITY;
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof Shape)
+		{
+			Shape other = (Shape) object;
+			return kind == other.kind
+					&& xSize == other.xSize
+					&& ySize == other.ySize
+					&& isFraction == other.isFraction
+					&& cornerRadius == other.cornerRadius
+					&& isCornerFraction == other.isCornerFraction
+					&& exponent == other.exponent
+					&& angle == other.angle
+					&& colour == other.colour;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Util.hashCode(ID.hashCode(),
+				Util.hashCode(kind,
+				Util.hashCode(xSize,
+				Util.hashCode(ySize,
+				Util.hashCode(isFraction,
+				Util.hashCode(cornerRadius,
+				Util.hashCode(isCornerFraction,
+				Util.hashCode(exponent,
+				Util.hashCode(angle,
+				Util.hashCode(colour))))))))));
+	}
+
+	@Override
+	public void updateDiskCacheKey(MessageDigest messageDigest)
+	{
+		ArrayList<byte[]> messages = new ArrayList<>();
+
+		messages.add(ID_BYTES);
+		CacheKeys.addVersion(messages, VERSION);
+		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(kind).array());
+		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(xSize).array());
+		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(ySize).array());
+		messages.add(new byte[]{(byte)(isFraction ? 't' : 'f')});
+		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(cornerRadius).array());
+		messages.add(new byte[]{(byte)(isCornerFraction ? 't' : 'f')});
+		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(exponent).array());
+		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(angle).array());
+		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(colour).array());
+
+		for(int c = 0; c < messages.size(); c++)
+		{
+			messageDigest.update(messages.get(c));
+		}
+	}
+
+	private static class MaskCache extends LruCache<String, Bitmap>
+	{
+		MaskCache(int maxBytes)
+		{
+			super(maxBytes);
+		}
+
+		@Override
+		protected int sizeOf(String key, Bitmap value)
+		{
+			return value.getRowBytes() * value.getHeight();
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.util.Util;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * StripeChain.java
+ * Applies several transformations in order, like Glide's MultiTransformation,
+ * but streams consecutive StripeTransformations through the image in
+ * horizontal stripes. Each stripe passes through every stage while it is
+ * still in the CPU cache, and only one full size output is allocated for the
+ * run rather than one per stage.
+ * <p>
+ * Stages that need the whole image, such as GaussianBlur and Shadow, are
+ * applied to the whole image as usual, splitting the chain into separate runs.
+ * <pre>
+ * new StripeChain(context, new Padding(20), new Ellipse(), new Shadow(context), new Tint(context));
+ * </pre>
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see StripeTransformation
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class StripeChain extends BitmapTransformation
+{
+	private static final String ID = "net.scarlettsystems.android.transformations.glide.StripeChain";
+	private static final byte[] ID_BYTES = ID.getBytes();
+	private static final int STRIPE_CACHE_BYTES = 128 * 1024;
+	private Context mContext;
+	private final Transformation<Bitmap>[] stages;
+
+	/**
+	 * Default constructor. Stages are applied in the given order.
+	 *
+	 * @param context current context
+	 * @param stages transformations to apply
+	 */
+	@SafeVarargs
+	public StripeChain(Context context, Transformation<Bitmap>... stages)
+	{
+		if(stages.length == 0)
+		{
+			throw new IllegalArgumentException("StripeChain must have at least one stage.");
+		}
+		mContext = context.getApplicationContext();
+		this.stages = stages.clone();
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		if(HardwareBitmaps.isHardware(source))
+		{
+			//Stripes are drawn through intermediate bitmaps, so stream one software copy
+			Bitmap copy = HardwareBitmaps.softwareCopy(source);
+			Bitmap bitmap = null;
+			try
+			{
+				bitmap = transform(pool, copy, outWidth, outHeight);
+				return bitmap;
+			}
+			finally
+			{
+				if(bitmap != copy)
+				{
+					pool.put(copy);
+				}
+			}
+		}
+		long start = System.nanoTime();
+		Bitmap current = source;
+		int c = 0;
+		while(c < stages.length)
+		{
+			Bitmap next;
+			if(stages[c] instanceof StripeTransformation)
+			{
+				int end = c;
+				while(end < stages.length && stages[end] instanceof StripeTransformation)
+				{
+					end++;
+				}
+				next = stream(pool, current, c, end);
+				c = end;
+			}
+			else
+			{
+				next = TransformRunner.run(mContext, stages[c], current, outWidth, outHeight);
+				c++;
+			}
+			if(current != source && next != current)
+			{
+				pool.put(current);
+			}
+			current = next;
+		}
+		TransformationMetrics.record("StripeChain", "canvas",
+				source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return current;
+	}
+
+	/**
+	 * Streams stripes of the input through stages from (inclusive) to end
+	 * (exclusive). Intermediate stripes are held in small pooled scratch
+	 * bitmaps, and the last stage writes straight into the pooled output.
+	 */
+	private Bitmap stream(BitmapPool pool, Bitmap input, int from, int end)
+	{
+		int width = input.getWidth();
+		int height = input.getHeight();
+		int count = end - from;
+		int stripeHeight = Math.max(1, STRIPE_CACHE_BYTES / (4 * width * (count + 1)));
+
+		//Find the tallest row range each intermediate stage produces for any stripe
+		int[][] rows = new int[count][2];
+		int[] scratchRows = new int[count];
+		for(int top = 0; top < height; top += stripeHeight)
+		{
+			resolveRows(from, count, width, height, top, Math.min(height, top + stripeHeight), rows);
+			for(int s = 0; s < count - 1; s++)
+			{
+				scratchRows[s] = Math.max(scratchRows[s], rows[s][1] - rows[s][0]);
+			}
+		}
+
+		Bitmap output = pool.get(width, height, Bitmap.Config.ARGB_8888);
+		Canvas outputCanvas = new Canvas(output);
+		Bitmap[] scratch = new Bitmap[count - 1];
+		Canvas[] scratchCanvas = new Canvas[count - 1];
+		try
+		{
+			for(int s = 0; s < count - 1; s++)
+			{
+				scratch[s] = pool.get(width, Math.max(1, scratchRows[s]), Bitmap.Config.ARGB_8888);
+				scratchCanvas[s] = new Canvas(scratch[s]);
+			}
+			for(int top = 0; top < height; top += stripeHeight)
+			{
+				CancellationToken.throwIfCancelled(null);
+				resolveRows(from, count, width, height, top, Math.min(height, top + stripeHeight), rows);
+				for(int s = 0; s < count; s++)
+				{
+					Bitmap stageInput = s == 0 ? input : scratch[s - 1];
+					int inputTop = s == 0 ? 0 : rows[s - 1][0];
+					int inputRows = s == 0 ? height : rows[s - 1][1] - rows[s - 1][0];
+					Canvas canvas = s == count - 1 ? outputCanvas : scratchCanvas[s];
+					int save = canvas.save();
+					if(s < count - 1)
+					{
+						canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+						canvas.translate(0, -rows[s][0]);
+					}
+					canvas.clipRect(0, rows[s][0], width, rows[s][1]);
+					((StripeTransformation)stages[from + s]).drawStripe(canvas, stageInput, inputTop, inputRows, width, height);
+					canvas.restoreToCount(save);
+				}
+			}
+		}
+		catch(TransformationCancelledException e)
+		{
+			pool.put(output);
+			throw e;
+		}
+		finally
+		{
+			for(Bitmap bitmap : scratch)
+			{
+				if(bitmap != null)
+				{
+					pool.put(bitmap);
+				}
+			}
+		}
+		return output;
+	}
+
+	/**
+	 * Works backwards from the output stripe to the rows each stage must produce.
+	 */
+	private void resolveRows(int from, int count, int width, int height, int top, int bottom, int[][] rows)
+	{
+		rows[count - 1][0] = top;
+		rows[count - 1][1] = bottom;
+		for(int s = count - 1; s > 0; s--)
+		{
+			((StripeTransformation)stages[from + s]).getSourceRows(width, height, rows[s][0], rows[s][1], rows[s - 1]);
+			rows[s - 1][0] = Math.max(0, rows[s - 1][0]);
+			rows[s - 1][1] = Math.min(height, Math.max(rows[s - 1][0], rows[s - 1][1]));
+		}
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof StripeChain)
+		{
+			StripeChain other = (StripeChain) object;
+			return Arrays.equals(stages, other.stages);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Util.hashCode(ID.hashCode(),
+				Arrays.hashCode(stages));
+	}
+
+	@Override
+	public void updateDiskCacheKey(MessageDigest messageDigest)
+	{
+		messageDigest.update(ID_BYTES);
+		for(Transformation<Bitmap> stage : stages)
+		{
+			stage.updateDiskCacheKey(messageDigest);
+		}
+	}
+}
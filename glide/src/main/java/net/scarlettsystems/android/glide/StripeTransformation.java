@@ -0,0 +1,44 @@
+package net.scarlettsystems.android.glide;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+/**
+ * StripeTransformation.java
+ * A transformation that can produce its result a horizontal stripe at a time,
+ * from a limited range of source rows. StripeChain streams such
+ * transformations stripe by stripe so that each stripe passes through every
+ * stage while it is still in the CPU cache.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see StripeChain
+ */
+public interface StripeTransformation
+{
+	/**
+	 * Returns the range of source rows, including any halo, needed to produce
+	 * the given rows of the result.
+	 *
+	 * @param width source width
+	 * @param height source height
+	 * @param top first result row, inclusive
+	 * @param bottom last result row, exclusive
+	 * @param rows receives the first and last source rows, inclusive and exclusive
+	 */
+	void getSourceRows(int width, int height, int top, int bottom, int[] rows);
+
+	/**
+	 * Draws the result as it would be drawn for the whole image. The canvas is
+	 * clipped, and translated if required, so that only the requested rows are
+	 * written. The input holds the requested source rows at its top.
+	 *
+	 * @param canvas canvas of the result
+	 * @param input bitmap holding the source rows
+	 * @param inputTop source row held by the first row of the input
+	 * @param inputRows number of source rows held by the input
+	 * @param width source width
+	 * @param height source height
+	 */
+	void drawStripe(Canvas canvas, Bitmap input, int inputTop, int inputRows, int width, int height);
+}
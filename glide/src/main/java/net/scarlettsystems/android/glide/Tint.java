@@ -4,7 +4,9 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Path;
 import android.graphics.PorterDuff;
+import android.graphics.Rect;
 import android.os.Build;
 import android.support.annotation.ColorInt;
 import android.support.annotation.ColorRes;
@@ -39,13 +41,16 @@ import java.util.ArrayList;
  * @see Padding
  */
 @SuppressWarnings("unused, WeakerAccess")
-public class Tint extends BitmapTransformation
+public class Tint extends BitmapTransformation implements StripeTransformation, ResolutionIndependent
 {
 	private static final String ID = "net.scarlettsystems.android.transformations.glide.Tint";
 	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 2;
 	private Context mContext;
 	private PorterDuff.Mode tintMode;
 	private int colour;
+	private Rect[] regions;
 	private static final float RENDERSCRIPT_MAX_BLUR_RADIUS = 25.0f;
 
 	@IntDef({EAST, NORTHEAST, NORTH, NORTHWEST, WEST, SOUTHWEST, SOUTH, SOUTHEAST})
@@ -120,18 +125,71 @@ public class Tint extends BitmapTransformation
 		return this;
 	}
 
+	/**
+	 * Limits the tint to the given regions of the source image, in source
+	 * pixels. Overlapping regions are tinted once, and pixels outside the
+	 * regions are copied through unchanged. Calling with no regions tints
+	 * the whole image again.
+	 *
+	 * @param regions regions to tint
+	 * @return returns self
+	 */
+	public Tint setRegions(Rect... regions)
+	{
+		this.regions = Regions.copyOf(regions);
+		return this;
+	}
+
 	@Override
 	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
 	{
-		Bitmap bitmap = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
-		//Draw to Canvas
-		Canvas canvas = new Canvas(bitmap);
-		canvas.drawBitmap(source,0, 0, null);
-		canvas.drawColor(colour, tintMode);
-
+		long start = System.nanoTime();
+		Bitmap bitmap;
+		if(HardwareBitmaps.isHardware(source))
+		{
+			bitmap = HardwareBitmaps.draw(pool, source, this);
+		}
+		else
+		{
+			bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+			//Draw to Canvas
+			Canvas canvas = new Canvas(bitmap);
+			drawStripe(canvas, source, 0, source.getHeight(), source.getWidth(), source.getHeight());
+		}
+		TransformationMetrics.record("Tint", "canvas", source.getWidth(), source.getHeight(), System.nanoTime() - start);
 		return bitmap;
 	}
 
+	@Override
+	public boolean isResolutionIndependent()
+	{
+		return regions == null;
+	}
+
+	@Override
+	public void getSourceRows(int width, int height, int top, int bottom, int[] rows)
+	{
+		rows[0] = top;
+		rows[1] = bottom;
+	}
+
+	@Override
+	public void drawStripe(Canvas canvas, Bitmap input, int inputTop, int inputRows, int width, int height)
+	{
+		canvas.drawBitmap(input, new Rect(0, 0, width, inputRows), new Rect(0, inputTop, width, inputTop + inputRows), null);
+		if(regions != null)
+		{
+			//Clip to the union of the regions so that overlaps are only tinted once
+			Path clip = new Path();
+			for(Rect region : regions)
+			{
+				clip.addRect(region.left, region.top, region.right, region.bottom, Path.Direction.CW);
+			}
+			canvas.clipPath(clip);
+		}
+		canvas.drawColor(colour, tintMode);
+	}
+
 	private void blur(Bitmap bitmap, Bitmap copyTo, float radius)
 	{
 		final RenderScript rs = RenderScript.create(mContext);
@@ -151,7 +209,8 @@ public class Tint extends BitmapTransformation
 		{
 			Tint other = (Tint) object;
 			return tintMode == other.tintMode
-					&& colour == other.colour;
+					&& colour == other.colour
+					&& Regions.equals(regions, other.regions);
 		}
 		return false;
 	}
@@ -161,7 +220,8 @@ public class Tint extends BitmapTransformation
 	{
 		return Util.hashCode(ID.hashCode(),
 				Util.hashCode(tintMode,
-						Util.hashCode(colour)));
+						Util.hashCode(colour,
+								Regions.hashCode(regions))));
 	}
 
 	@Override
@@ -170,8 +230,10 @@ public class Tint extends BitmapTransformation
 		ArrayList<byte[]> messages = new ArrayList<>();
 
 		messages.add(ID_BYTES);
+		CacheKeys.addVersion(messages, VERSION);
 		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(colour).array());
-		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(tintMode.hashCode()).array());
+		messages.add(tintMode.name().getBytes());
+		Regions.addTo(messages, regions);
 
 		for(int c = 0; c < messages.size(); c++)
 		{
@@ -0,0 +1,292 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.ColorInt;
+import android.support.annotation.ColorRes;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.bumptech.glide.util.Util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+
+/**
+ * TintedBlur.java
+ * Blurs the image and tints the result in a single transformation. Useful
+ * for darkened or frosted backgrounds. For opaque sources this produces the
+ * same image as GaussianBlur followed by Tint. For translucent sources and
+ * radii above 25, GaussianBlur keeps the source beneath the re-inflated blur,
+ * while TintedBlur does not.
+ * <p>
+ * When the blur is computed in stripes, or at a reduced resolution for radii
+ * above 25, the tint is applied by a colour filter as the blurred image is
+ * written to the output, so no extra pass over the image is required. A full
+ * size blur is written to the output by RenderScript and tinted in a second
+ * pass.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see GaussianBlur
+ * @see Tint
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class TintedBlur extends BitmapTransformation implements HeavyTransformation, ScalableTransformation
+{
+	private static final String ID = "net.scarlettsystems.android.transformations.glide.TintedBlur";
+	private static final byte[] ID_BYTES = ID.getBytes();
+	/** Version of this transformation's algorithm, increased whenever its output changes. */
+	public static final int VERSION = 1;
+	private static final float RENDERSCRIPT_MAX_BLUR_RADIUS = BlurEngine.RENDERSCRIPT_MAX_BLUR_RADIUS;
+	private Context mContext;
+	private float blurRadius;
+	private PorterDuff.Mode tintMode;
+	private int colour;
+	private CancellationToken cancellationToken;
+	private BlurEngine.FrameBlur frameBlur;
+
+	/**
+	 * Default constructor. Specified radius is used to blur the image.
+	 * The tint is black at 50% opacity in SRC_IN mode by default, as in Tint.
+	 *
+	 * @param context current context
+	 * @param blurRadius blur radius in pixels, can be fractional
+	 */
+	public TintedBlur(Context context, float blurRadius)
+	{
+		mContext = context;
+		this.blurRadius = Math.max(0f, blurRadius);
+		this.tintMode = PorterDuff.Mode.SRC_IN;
+		this.colour = Color.argb(128,0,0,0);
+		this.frameBlur = new BlurEngine.FrameBlur(context);
+	}
+
+	/**
+	 * Sets the tint mode to be used
+	 *
+	 * @param  mode  PorterDuff tint mode
+	 * @return      returns self
+	 */
+	public TintedBlur setTintMode(PorterDuff.Mode mode)
+	{
+		this.tintMode = mode;
+		return this;
+	}
+
+	/**
+	 * Sets the tint colour.
+	 * Tint is black with 50% opacity by default.
+	 *
+	 * @param colour the colour as a @ColorInt
+	 * @return returns self
+	 */
+	public TintedBlur setTintColour(@ColorInt int colour)
+	{
+		this.colour = colour;
+		return this;
+	}
+
+	/**
+	 * Sets the tint colour by colour resource.
+	 * Tint is black with 50% opacity by default.
+	 *
+	 * @param  res  the colour resource as a @ColorRes
+	 * @return      returns self
+	 */
+	public TintedBlur setTintColourRes(@ColorRes int res)
+	{
+		if(Build.VERSION.SDK_INT < 23)
+		{
+			this.colour = mContext.getResources().getColor(res);
+		}
+		else
+		{
+			this.colour = mContext.getResources().getColor(res, null);
+		}
+		return this;
+	}
+
+	float getBlurRadius()
+	{
+		return blurRadius;
+	}
+
+	/**
+	 * Sets a token that stops the blur early once cancelled.
+	 * Loads with different tokens are not merged by Glide, so cancelling one
+	 * never aborts another.
+	 *
+	 * @param token cancellation token, or null for none
+	 * @return returns self
+	 */
+	public TintedBlur setCancellationToken(CancellationToken token)
+	{
+		this.cancellationToken = token;
+		return this;
+	}
+
+	/**
+	 * Chooses the blur strategy for a source of the given dimensions.
+	 * Memory pressure only changes how scratch memory is used, never the output.
+	 */
+	MemoryPlanner.Plan plan(int width, int height)
+	{
+		float scaleFactor = Math.min(1f, RENDERSCRIPT_MAX_BLUR_RADIUS / blurRadius);
+		if(scaleFactor < 1f)
+		{
+			return MemoryPlanner.choose(MemoryPlanner.downsampledBlur(width, height, scaleFactor, true));
+		}
+		if(MemoryPressure.getLevel() != MemoryPressure.LEVEL_NONE)
+		{
+			return MemoryPlanner.choose(MemoryPlanner.tiledBlur(width, height, blurRadius));
+		}
+		return MemoryPlanner.choose(
+				MemoryPlanner.fullBlur(width, height),
+				MemoryPlanner.tiledBlur(width, height, blurRadius));
+	}
+
+	@Override
+	public TintedBlur scaledBy(float factor)
+	{
+		return new TintedBlur(mContext, blurRadius * factor)
+				.setTintMode(tintMode)
+				.setTintColour(colour)
+				.setCancellationToken(cancellationToken);
+	}
+
+	@Override
+	public boolean isHeavy(int width, int height)
+	{
+		return (long)width * (long)height >= Offloaded.HEAVY_PIXEL_COUNT;
+	}
+
+	@Override
+	protected Bitmap transform(BitmapPool pool, Bitmap source, int outWidth, int outHeight)
+	{
+		if(HardwareBitmaps.isHardware(source))
+		{
+			//RenderScript cannot read hardware bitmaps, so blur one software copy
+			Bitmap copy = HardwareBitmaps.softwareCopy(source);
+			Bitmap bitmap = null;
+			try
+			{
+				bitmap = transform(pool, copy, outWidth, outHeight);
+				return bitmap;
+			}
+			finally
+			{
+				if(bitmap != copy)
+				{
+					pool.put(copy);
+				}
+			}
+		}
+		long start = System.nanoTime();
+		CancellationToken.throwIfCancelled(cancellationToken);
+		MemoryPlanner.Plan plan = plan(source.getWidth(), source.getHeight());
+		Bitmap bitmap = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(bitmap);
+		try
+		{
+			switch(plan.getStrategy())
+			{
+				case MemoryPlanner.STRATEGY_TILED:
+					//Tint each stripe as it is written, the filter's colour acts as source as in drawColor
+					Paint paint = new Paint();
+					paint.setColorFilter(new PorterDuffColorFilter(colour, tintMode));
+					BlurEngine.blurTiled(mContext, pool, source, bitmap, blurRadius, cancellationToken, paint);
+					break;
+				case MemoryPlanner.STRATEGY_DOWNSAMPLED:
+					blurDownsampled(pool, canvas, source, plan.getScale());
+					break;
+				default:
+					//Blur straight into the output, then tint in place
+					frameBlur.blur(source, bitmap, blurRadius);
+					canvas.drawColor(colour, tintMode);
+					break;
+			}
+		}
+		catch(TransformationCancelledException e)
+		{
+			pool.put(bitmap);
+			throw e;
+		}
+		TransformationMetrics.record("TintedBlur", "renderscript", plan,
+				source.getWidth(), source.getHeight(), System.nanoTime() - start);
+		return bitmap;
+	}
+
+	private void blurDownsampled(BitmapPool pool, Canvas canvas, Bitmap source, float scaleFactor)
+	{
+		int scaledWidth = Math.max(1, Math.round((float) source.getWidth() * scaleFactor));
+		int scaledHeight = Math.max(1, Math.round((float) source.getHeight() * scaleFactor));
+		Paint paint = new Paint();
+		paint.setAntiAlias(true);
+		paint.setFilterBitmap(true);
+		Bitmap scaled = pool.get(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
+		try
+		{
+			new Canvas(scaled).drawBitmap(source, null, new Rect(0, 0, scaledWidth, scaledHeight), paint);
+			CancellationToken.throwIfCancelled(cancellationToken);
+			frameBlur.blur(scaled, scaled, blurRadius * scaleFactor);
+			CancellationToken.throwIfCancelled(cancellationToken);
+			//Tint while re-inflating, the filter's colour acts as source as in drawColor
+			Rect bitmapBounds = new Rect(0, 0, source.getWidth(), source.getHeight());
+			paint.setColorFilter(new PorterDuffColorFilter(colour, tintMode));
+			canvas.drawBitmap(scaled, null, bitmapBounds, paint);
+		}
+		finally
+		{
+			pool.put(scaled);
+		}
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (object instanceof TintedBlur)
+		{
+			TintedBlur other = (TintedBlur) object;
+			return blurRadius == other.blurRadius
+					&& tintMode == other.tintMode
+					&& colour == other.colour
+					&& cancellationToken == other.cancellationToken;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Util.hashCode(cancellationToken, Util.hashCode(ID.hashCode(),
+				Util.hashCode(blurRadius,
+						Util.hashCode(tintMode,
+								Util.hashCode(colour)))));
+	}
+
+	@Override
+	public void updateDiskCacheKey(MessageDigest messageDigest)
+	{
+		ArrayList<byte[]> messages = new ArrayList<>();
+
+		messages.add(ID_BYTES);
+		CacheKeys.addVersion(messages, VERSION);
+		messages.add(ByteBuffer.allocate(Float.SIZE/Byte.SIZE).putFloat(blurRadius).array());
+		messages.add(ByteBuffer.allocate(Integer.SIZE/Byte.SIZE).putInt(colour).array());
+		messages.add(tintMode.name().getBytes());
+
+		for(int c = 0; c < messages.size(); c++)
+		{
+			messageDigest.update(messages.get(c));
+		}
+	}
+}
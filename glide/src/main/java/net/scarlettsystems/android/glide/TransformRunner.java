@@ -0,0 +1,56 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapResource;
+
+/**
+ * TransformRunner.java
+ * Runs a Glide bitmap transformation directly on a bitmap, outside of a
+ * Glide request, using Glide's shared BitmapPool.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+final class TransformRunner
+{
+	private TransformRunner(){}
+
+	/**
+	 * Applies the transformation to the source at its own dimensions.
+	 * Transformations that work in place, such as GaussianBlur, may return and
+	 * modify the source itself.
+	 *
+	 * @param context current context
+	 * @param transformation transformation to apply
+	 * @param source source bitmap, which is not recycled
+	 * @return transformed bitmap
+	 */
+	static Bitmap run(Context context, Transformation<Bitmap> transformation, Bitmap source)
+	{
+		return run(context, transformation, source, source.getWidth(), source.getHeight());
+	}
+
+	/**
+	 * Applies the transformation to the source for the given target dimensions.
+	 *
+	 * @param context current context
+	 * @param transformation transformation to apply
+	 * @param source source bitmap, which is not recycled
+	 * @param outWidth target width in pixels
+	 * @param outHeight target height in pixels
+	 * @return transformed bitmap
+	 */
+	static Bitmap run(Context context, Transformation<Bitmap> transformation, Bitmap source, int outWidth, int outHeight)
+	{
+		BitmapPool pool = Glide.get(context).getBitmapPool();
+		Resource<Bitmap> resource = BitmapResource.obtain(source, pool);
+		Resource<Bitmap> result = transformation.transform(context, resource, outWidth, outHeight);
+		return result.get();
+	}
+}
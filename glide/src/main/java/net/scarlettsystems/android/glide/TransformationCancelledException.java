@@ -0,0 +1,17 @@
+package net.scarlettsystems.android.glide;
+
+/**
+ * TransformationCancelledException.java
+ * Thrown by a transformation that stopped early because it was cancelled.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see CancellationToken
+ */
+public class TransformationCancelledException extends RuntimeException
+{
+	public TransformationCancelledException()
+	{
+		super("Transformation cancelled");
+	}
+}
@@ -0,0 +1,98 @@
+package net.scarlettsystems.android.glide;
+
+/**
+ * TransformationMetrics.java
+ * Reports how each transformation in this package ran, such as how long it
+ * took, which engine produced the result and which memory strategy was
+ * chosen. No records are created, and no objects are allocated, until a
+ * listener is set. Every completion is also added to TransformationStats.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see TransformationStats
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class TransformationMetrics
+{
+	private static volatile Listener listener;
+
+	private TransformationMetrics(){}
+
+	/**
+	 * Receives a record for every completed transformation.
+	 * Called on the thread that ran the transformation.
+	 */
+	public interface Listener
+	{
+		void onTransformed(Record record);
+	}
+
+	/**
+	 * Describes a single completed transformation.
+	 */
+	public static final class Record
+	{
+		/** Simple class name of the transformation. */
+		public final String transformation;
+		/** Engine that produced the result, for example "renderscript" or "platform". */
+		public final String engine;
+		/** Memory strategy chosen by MemoryPlanner, or null if not planned. */
+		public final String strategy;
+		/** Source dimensions in pixels. */
+		public final int width, height;
+		/** Estimated peak scratch memory in bytes, or -1 if not planned. */
+		public final long peakBytes;
+		/** Wall time spent in the transformation in nanoseconds. */
+		public final long durationNanos;
+
+		Record(String transformation, String engine, String strategy, int width, int height, long peakBytes, long durationNanos)
+		{
+			this.transformation = transformation;
+			this.engine = engine;
+			this.strategy = strategy;
+			this.width = width;
+			this.height = height;
+			this.peakBytes = peakBytes;
+			this.durationNanos = durationNanos;
+		}
+
+		@Override
+		public String toString()
+		{
+			return transformation + " [" + engine + (strategy != null ? ", " + strategy : "") + "] "
+					+ width + "x" + height + " in " + (durationNanos / 1000) + "us";
+		}
+	}
+
+	/**
+	 * Sets the listener receiving transformation records, or null to stop recording.
+	 *
+	 * @param l listener
+	 */
+	public static void setListener(Listener l)
+	{
+		listener = l;
+	}
+
+	static boolean isEnabled()
+	{
+		return listener != null;
+	}
+
+	static void record(String transformation, String engine, int width, int height, long durationNanos)
+	{
+		TransformationStats.record(transformation, width, height, durationNanos);
+		Listener l = listener;
+		if(l == null){return;}
+		l.onTransformed(new Record(transformation, engine, null, width, height, -1, durationNanos));
+	}
+
+	static void record(String transformation, String engine, MemoryPlanner.Plan plan, int width, int height, long durationNanos)
+	{
+		TransformationStats.record(transformation, width, height, durationNanos);
+		Listener l = listener;
+		if(l == null){return;}
+		l.onTransformed(new Record(transformation, engine, MemoryPlanner.getStrategyName(plan.getStrategy()),
+				width, height, plan.getPeakBytes(), durationNanos));
+	}
+}
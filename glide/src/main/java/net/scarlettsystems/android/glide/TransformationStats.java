@@ -0,0 +1,277 @@
+package net.scarlettsystems.android.glide;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TransformationStats.java
+ * Keeps latency and pixel throughput histograms for every transformation in
+ * this package, so that percentiles such as p50 and p99 can be collected from
+ * devices in the field. Recording is on by default and costs a few atomic
+ * increments per transformation: histograms have power of two buckets and
+ * are striped by thread, so concurrent transformations rarely contend.
+ * <p>
+ * Percentiles are estimated from the buckets, so they are accurate to within
+ * a factor of the square root of two. Use {@link TransformationMetrics} for
+ * individual records.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ * @see TransformationMetrics
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class TransformationStats
+{
+	private static final int BUCKETS = 64;
+	private static final int STRIPES = 8;
+	private static final ConcurrentHashMap<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+	private static volatile boolean enabled = true;
+
+	private TransformationStats(){}
+
+	/**
+	 * Latency and throughput statistics of one transformation at the time of the snapshot.
+	 */
+	public static final class Snapshot
+	{
+		/** Simple class name of the transformation. */
+		public final String transformation;
+		/** Number of completed transformations. */
+		public final long count;
+		/** Total wall time spent in the transformation in nanoseconds. */
+		public final long totalNanos;
+		/** Total number of source pixels transformed. */
+		public final long totalPixels;
+		private final long[] latency;
+		private final long[] throughput;
+
+		Snapshot(String transformation, long count, long totalNanos, long totalPixels, long[] latency, long[] throughput)
+		{
+			this.transformation = transformation;
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.totalPixels = totalPixels;
+			this.latency = latency;
+			this.throughput = throughput;
+		}
+
+		/**
+		 * Returns the estimated latency below which the given fraction of transformations completed.
+		 *
+		 * @param fraction percentile as a fraction, for example 0.99
+		 * @return latency in nanoseconds, or 0 if none were recorded
+		 */
+		public long getLatencyNanos(double fraction)
+		{
+			return percentile(latency, fraction);
+		}
+
+		/**
+		 * Returns the estimated throughput that the given fraction of transformations fell below.
+		 *
+		 * @param fraction percentile as a fraction, for example 0.5
+		 * @return throughput in source pixels per second, or 0 if none were recorded
+		 */
+		public long getPixelsPerSecond(double fraction)
+		{
+			return percentile(throughput, fraction);
+		}
+
+		public long getP50Nanos()
+		{
+			return getLatencyNanos(0.5);
+		}
+
+		public long getP99Nanos()
+		{
+			return getLatencyNanos(0.99);
+		}
+
+		public long getMeanNanos()
+		{
+			return count > 0 ? totalNanos / count : 0;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(Locale.US, "%s n=%d p50=%.2fms p99=%.2fms mean=%.2fms throughput p50=%.1fMP/s",
+					transformation, count,
+					getP50Nanos() / 1e6, getP99Nanos() / 1e6, getMeanNanos() / 1e6,
+					getPixelsPerSecond(0.5) / 1e6);
+		}
+	}
+
+	/**
+	 * Turns recording on or off. Recording is on by default.
+	 *
+	 * @param on whether to record
+	 */
+	public static void setEnabled(boolean on)
+	{
+		enabled = on;
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Returns the statistics of every transformation recorded so far, by name.
+	 * Transformations still running are not included.
+	 *
+	 * @return snapshots sorted by transformation name
+	 */
+	public static Map<String, Snapshot> snapshot()
+	{
+		Map<String, Snapshot> snapshots = new TreeMap<>();
+		for(Map.Entry<String, Histogram> entry : HISTOGRAMS.entrySet())
+		{
+			snapshots.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Returns the statistics of one transformation, or null if none were recorded.
+	 *
+	 * @param transformation simple class name of the transformation
+	 * @return snapshot, or null
+	 */
+	public static Snapshot snapshot(String transformation)
+	{
+		Histogram histogram = HISTOGRAMS.get(transformation);
+		return histogram != null ? histogram.snapshot(transformation) : null;
+	}
+
+	/**
+	 * Clears all statistics. Transformations completing during the reset may
+	 * be partly counted.
+	 */
+	public static void reset()
+	{
+		for(Histogram histogram : HISTOGRAMS.values())
+		{
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Returns the statistics of every transformation as text, one line each.
+	 *
+	 * @return text dump
+	 */
+	public static String dump()
+	{
+		StringBuilder builder = new StringBuilder();
+		for(Snapshot snapshot : snapshot().values())
+		{
+			builder.append(snapshot).append('\n');
+		}
+		return builder.toString();
+	}
+
+	static void record(String transformation, int width, int height, long durationNanos)
+	{
+		if(!enabled){return;}
+		Histogram histogram = HISTOGRAMS.get(transformation);
+		if(histogram == null)
+		{
+			Histogram created = new Histogram();
+			histogram = HISTOGRAMS.putIfAbsent(transformation, created);
+			if(histogram == null)
+			{
+				histogram = created;
+			}
+		}
+		histogram.add((long)width * (long)height, Math.max(1, durationNanos));
+	}
+
+	/**
+	 * Returns the power of two bucket of a value: bucket b holds values from 2^b up to 2^(b+1).
+	 */
+	static int bucketOf(long value)
+	{
+		return 63 - Long.numberOfLeadingZeros(Math.max(1, value));
+	}
+
+	/**
+	 * Estimates a percentile from power of two buckets, as the geometric
+	 * middle of the bucket it falls in.
+	 */
+	static long percentile(long[] buckets, double fraction)
+	{
+		long count = 0;
+		for(long bucket : buckets)
+		{
+			count += bucket;
+		}
+		if(count <= 0){return 0;}
+		long rank = Math.max(1, (long)Math.ceil(Math.max(0.0, Math.min(1.0, fraction)) * count));
+		long seen = 0;
+		for(int b = 0; b < BUCKETS; b++)
+		{
+			seen += buckets[b];
+			if(seen >= rank)
+			{
+				return (long)((1L << b) * Math.sqrt(2.0));
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Latency and throughput buckets plus totals, one row per stripe. Each
+	 * thread adds to the row of its stripe, and rows are summed when read.
+	 */
+	private static final class Histogram
+	{
+		private static final int NANOS = 2 * BUCKETS;
+		private static final int PIXELS = NANOS + 1;
+		private static final int ROW = PIXELS + 1;
+		private final AtomicLongArray cells = new AtomicLongArray(STRIPES * ROW);
+
+		void add(long pixels, long durationNanos)
+		{
+			int row = ((int)Thread.currentThread().getId() & (STRIPES - 1)) * ROW;
+			long pixelsPerSecond = (long)(pixels * 1e9 / durationNanos);
+			cells.incrementAndGet(row + bucketOf(durationNanos));
+			cells.incrementAndGet(row + BUCKETS + bucketOf(pixelsPerSecond));
+			cells.addAndGet(row + NANOS, durationNanos);
+			cells.addAndGet(row + PIXELS, pixels);
+		}
+
+		Snapshot snapshot(String transformation)
+		{
+			long[] latency = new long[BUCKETS];
+			long[] throughput = new long[BUCKETS];
+			long count = 0, nanos = 0, pixels = 0;
+			for(int s = 0; s < STRIPES; s++)
+			{
+				int row = s * ROW;
+				for(int b = 0; b < BUCKETS; b++)
+				{
+					long completed = cells.get(row + b);
+					latency[b] += completed;
+					count += completed;
+					throughput[b] += cells.get(row + BUCKETS + b);
+				}
+				nanos += cells.get(row + NANOS);
+				pixels += cells.get(row + PIXELS);
+			}
+			return new Snapshot(transformation, count, nanos, pixels, latency, throughput);
+		}
+
+		void reset()
+		{
+			for(int c = 0; c < cells.length(); c++)
+			{
+				cells.set(c, 0);
+			}
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.annotation.WorkerThread;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.Transformation;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Transformer.java
+ * Runs transformations, or chains of them, on bitmaps outside of any Glide
+ * request, for example when preparing an image for upload or sharing.
+ * Transformations run exactly as they would inside a request: scratch and
+ * output bitmaps come from Glide's BitmapPool, each transformation reports
+ * to TransformationMetrics, and work stops early when cancelled.
+ * <pre>
+ * Transformer.submit(context, executor, bitmap, callback, new Ellipse(), new Mosaic().setByFactor(8));
+ * </pre>
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class Transformer
+{
+	private Transformer(){}
+
+	/**
+	 * Receives the result of a submitted task on the executor's thread.
+	 * Neither method is called if the task is cancelled.
+	 */
+	public interface Callback
+	{
+		/**
+		 * @param result the transformed bitmap, owned by the caller
+		 */
+		void onResult(Bitmap result);
+
+		/**
+		 * @param e the cause of failure
+		 */
+		void onError(Exception e);
+	}
+
+	/**
+	 * A submitted transformation. Cancelling it stops the transformation in
+	 * progress at its next cancellation check, whether or not the thread is
+	 * interrupted.
+	 */
+	public static final class Task extends FutureTask<Bitmap>
+	{
+		private final CancellationToken token;
+		private final Callback callback;
+
+		private Task(Callable<Bitmap> callable, CancellationToken token, Callback callback)
+		{
+			super(callable);
+			this.token = token;
+			this.callback = callback;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			token.cancel();
+			return super.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		protected void done()
+		{
+			if(callback == null || isCancelled()){return;}
+			try
+			{
+				callback.onResult(get());
+			}
+			catch(ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if(cause instanceof TransformationCancelledException){return;}
+				callback.onError(cause instanceof Exception ? (Exception)cause : e);
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Applies the transformations in order to the source on the calling thread.
+	 * The source is copied into a pooled bitmap first, so it is never modified
+	 * or recycled, and may be immutable.
+	 *
+	 * @param context current context
+	 * @param source bitmap to transform
+	 * @param transformations transformations to apply, in order
+	 * @return transformed bitmap, owned by the caller
+	 */
+	@WorkerThread
+	@SafeVarargs
+	public static Bitmap transform(Context context, Bitmap source, Transformation<Bitmap>... transformations)
+	{
+		BitmapPool pool = Glide.get(context).getBitmapPool();
+		CancellationToken.throwIfCancelled(null);
+		Bitmap current = copyOf(pool, source);
+		try
+		{
+			for(Transformation<Bitmap> transformation : transformations)
+			{
+				CancellationToken.throwIfCancelled(null);
+				Bitmap result = TransformRunner.run(context, transformation, current);
+				if(result != current)
+				{
+					pool.put(current);
+				}
+				current = result;
+			}
+		}
+		catch(RuntimeException e)
+		{
+			pool.put(current);
+			throw e;
+		}
+		return current;
+	}
+
+	/**
+	 * Returns a mutable, pooled software copy of the source, which in place
+	 * transformations may then modify without touching the caller's bitmap.
+	 */
+	static Bitmap copyOf(BitmapPool pool, Bitmap source)
+	{
+		if(HardwareBitmaps.isHardware(source))
+		{
+			return HardwareBitmaps.softwareCopy(source);
+		}
+		Bitmap copy = pool.get(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+		new Canvas(copy).drawBitmap(source, 0, 0, null);
+		return copy;
+	}
+
+	/**
+	 * Applies the transformations in order to the source on the given executor.
+	 *
+	 * @param context current context
+	 * @param executor executor to run on
+	 * @param source bitmap to transform
+	 * @param callback receiver of the result, may be null
+	 * @param transformations transformations to apply, in order
+	 * @return task, which can also be used as a Future
+	 */
+	@SafeVarargs
+	public static Task submit(Context context, Executor executor, final Bitmap source, Callback callback,
+			final Transformation<Bitmap>... transformations)
+	{
+		final Context appContext = context.getApplicationContext();
+		final CancellationToken token = new CancellationToken();
+		Task task = new Task(new Callable<Bitmap>()
+		{
+			@Override
+			public Bitmap call()
+			{
+				CancellationToken.setCurrent(token);
+				try
+				{
+					return transform(appContext, source, transformations);
+				}
+				finally
+				{
+					CancellationToken.setCurrent(null);
+				}
+			}
+		}, token, callback);
+		executor.execute(task);
+		return task;
+	}
+}
@@ -0,0 +1,259 @@
+package net.scarlettsystems.android.glide;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.RectF;
+import android.os.Process;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Warmup.java
+ * Performs the one-off initialisation of the transformations in this package
+ * ahead of time, so the first blurred or shadowed image is not delayed by it.
+ * This covers class loading, creating the shared RenderScript context,
+ * loading the blur intrinsic and the platform blur and compositing paths.
+ * <p>
+ * Call {@link #runInBackground(Context, Callback)} from Application.onCreate,
+ * or {@link #run(Context)} from an existing background thread.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class Warmup
+{
+	private static final int PROBE_SIZE = 32;
+
+	private Warmup(){}
+
+	/**
+	 * Receives the report of a background warm-up.
+	 */
+	public interface Callback
+	{
+		void onWarmupComplete(Report report);
+	}
+
+	/**
+	 * Durations of each warm-up step, in the order they ran.
+	 */
+	public static final class Report
+	{
+		private final Map<String, Long> durations = new LinkedHashMap<>();
+		private final Map<String, Exception> failures = new LinkedHashMap<>();
+
+		private Report(){}
+
+		/**
+		 * Returns the duration of every step in nanoseconds, keyed by step name.
+		 *
+		 * @return step durations
+		 */
+		public Map<String, Long> getDurations()
+		{
+			return Collections.unmodifiableMap(durations);
+		}
+
+		/**
+		 * Returns the steps that failed, such as RenderScript on devices without
+		 * support for it, keyed by step name.
+		 *
+		 * @return step failures
+		 */
+		public Map<String, Exception> getFailures()
+		{
+			return Collections.unmodifiableMap(failures);
+		}
+
+		/**
+		 * Returns the total duration of all steps in nanoseconds.
+		 *
+		 * @return total duration
+		 */
+		public long getTotalNanos()
+		{
+			long total = 0;
+			for(long duration : durations.values())
+			{
+				total += duration;
+			}
+			return total;
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder builder = new StringBuilder("Warmup");
+			for(Map.Entry<String, Long> entry : durations.entrySet())
+			{
+				builder.append(' ').append(entry.getKey()).append('=')
+						.append(entry.getValue() / 1000000f).append("ms");
+				if(failures.containsKey(entry.getKey()))
+				{
+					builder.append("(failed)");
+				}
+			}
+			return builder.append(" total=").append(getTotalNanos() / 1000000f).append("ms").toString();
+		}
+	}
+
+	private interface Step
+	{
+		void run();
+	}
+
+	/**
+	 * Runs the warm-up on the calling thread, which should not be the main thread.
+	 *
+	 * @param context current context
+	 * @return durations of each step
+	 */
+	public static Report run(Context context)
+	{
+		final Context appContext = context.getApplicationContext();
+		final Bitmap probe = Bitmap.createBitmap(PROBE_SIZE, PROBE_SIZE, Bitmap.Config.ARGB_8888);
+		probe.eraseColor(Color.GRAY);
+		Report report = new Report();
+
+		step(report, "classes", new Step()
+		{
+			@Override
+			public void run()
+			{
+				loadClasses();
+			}
+		});
+		step(report, "renderscript", new Step()
+		{
+			@Override
+			public void run()
+			{
+				BlurEngine.getRenderScript(appContext);
+			}
+		});
+		step(report, "blur", new Step()
+		{
+			@Override
+			public void run()
+			{
+				BlurEngine.blur(appContext, probe, probe, PROBE_SIZE / 4);
+			}
+		});
+		step(report, "maskfilter", new Step()
+		{
+			@Override
+			public void run()
+			{
+				Paint paint = new Paint();
+				paint.setMaskFilter(new BlurMaskFilter(PROBE_SIZE / 4, BlurMaskFilter.Blur.NORMAL));
+				probe.extractAlpha(paint, new int[2]).recycle();
+			}
+		});
+		step(report, "compositing", new Step()
+		{
+			@Override
+			public void run()
+			{
+				Bitmap mask = Bitmap.createBitmap(PROBE_SIZE, PROBE_SIZE, Bitmap.Config.ARGB_8888);
+				Paint paint = new Paint();
+				paint.setAntiAlias(true);
+				Canvas canvas = new Canvas(mask);
+				canvas.drawOval(new RectF(0, 0, PROBE_SIZE, PROBE_SIZE), paint);
+				paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
+				canvas.drawBitmap(probe, 0, 0, paint);
+				mask.recycle();
+			}
+		});
+		step(report, "masks", new Step()
+		{
+			@Override
+			public void run()
+			{
+				Shape.getMask(Shape.SUPERELLIPSE, PROBE_SIZE, PROBE_SIZE, PROBE_SIZE, PROBE_SIZE, 0f, 4f, 0f);
+			}
+		});
+		step(report, "curves", new Step()
+		{
+			@Override
+			public void run()
+			{
+				Curves.gamma(1f).apply(probe, probe);
+			}
+		});
+
+		probe.recycle();
+		return report;
+	}
+
+	/**
+	 * Runs the warm-up on a new low priority thread.
+	 *
+	 * @param context current context
+	 * @param callback receiver of the report, called on the warm-up thread, may be null
+	 */
+	public static void runInBackground(final Context context, final Callback callback)
+	{
+		final Context appContext = context.getApplicationContext();
+		Thread thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				Report report = Warmup.run(appContext);
+				if(callback != null)
+				{
+					callback.onWarmupComplete(report);
+				}
+			}
+		}, "glide-transformations-warmup");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static void step(Report report, String name, Step step)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			step.run();
+		}
+		catch(RuntimeException e)
+		{
+			report.failures.put(name, e);
+		}
+		report.durations.put(name, System.nanoTime() - start);
+	}
+
+	private static void loadClasses()
+	{
+		Class<?>[] classes =
+				{
+						Ellipse.class, Flip.class, GaussianBlur.class, Greyscale.class,
+						Inverse.class, Mosaic.class, Padding.class, Shadow.class,
+						Tint.class, TintedBlur.class, BlurPyramid.class, BlurEngine.class,
+						CancellationToken.class, TransformationMetrics.class, Curves.class, Shape.class
+				};
+		ClassLoader loader = Warmup.class.getClassLoader();
+		for(Class<?> c : classes)
+		{
+			try
+			{
+				Class.forName(c.getName(), true, loader);
+			}
+			catch(ClassNotFoundException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package net.scarlettsystems.android.glide;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BlurDownsampleTest.java
+ * Tests the scale at which sources are decoded ahead of a blur.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+public class BlurDownsampleTest
+{
+	private static final float DELTA = 1e-6f;
+
+	@Test
+	public void getDecodeScale_smallRadiiDecodeAtFullSize()
+	{
+		assertEquals(1f, BlurDownsample.getDecodeScale(0f), DELTA);
+		assertEquals(1f, BlurDownsample.getDecodeScale(4f), DELTA);
+		assertEquals(1f, BlurDownsample.getDecodeScale(8f), DELTA);
+	}
+
+	@Test
+	public void getDecodeScale_largeRadiiKeepBlurredDetail()
+	{
+		assertEquals(0.5f, BlurDownsample.getDecodeScale(16f), DELTA);
+		assertEquals(0.1f, BlurDownsample.getDecodeScale(80f), DELTA);
+	}
+
+	@Test
+	public void getDecodeScale_neverExceedsOne()
+	{
+		for(float radius = 0f; radius < 200f; radius += 0.5f)
+		{
+			float scale = BlurDownsample.getDecodeScale(radius);
+			assertTrue(scale > 0f && scale <= 1f);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package net.scarlettsystems.android.glide;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * CurvesTest.java
+ * Tests the tables built by the Curves factories, by comparing them with
+ * curves built from the expected tables, and the mapping of pixels through them.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+public class CurvesTest
+{
+	@Test
+	public void inverse_reversesEachChannel()
+	{
+		int[] table = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			table[c] = 255 - c;
+		}
+		assertCurvesEqual(Curves.perChannel(table, table, table), Curves.inverse());
+	}
+
+	@Test
+	public void greyscale_mapsLuminanceToItself()
+	{
+		int[] ramp = ramp();
+		assertCurvesEqual(Curves.luminance(ramp, ramp, ramp), Curves.greyscale());
+		assertNotEquals(Curves.perChannel(ramp, ramp, ramp), Curves.greyscale());
+	}
+
+	@Test
+	public void gamma_ofOneIsIdentity()
+	{
+		int[] ramp = ramp();
+		assertCurvesEqual(Curves.perChannel(ramp, ramp, ramp), Curves.gamma(1f));
+	}
+
+	@Test
+	public void gamma_keepsEndPoints()
+	{
+		int[] table = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			table[c] = (int)Math.round(255.0 * Math.pow(c / 255.0, 2.0));
+		}
+		assertEquals(0, table[0]);
+		assertEquals(255, table[255]);
+		assertCurvesEqual(Curves.perChannel(table, table, table), Curves.gamma(2f));
+	}
+
+	@Test
+	public void contrast_ofOneIsIdentity()
+	{
+		int[] ramp = ramp();
+		assertCurvesEqual(Curves.perChannel(ramp, ramp, ramp), Curves.contrast(1f));
+	}
+
+	@Test
+	public void contrast_ofZeroIsMidGrey()
+	{
+		int[] table = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			table[c] = 128;
+		}
+		assertCurvesEqual(Curves.perChannel(table, table, table), Curves.contrast(0f));
+	}
+
+	@Test
+	public void posterize_twoLevelsThresholdsAtMiddle()
+	{
+		int[] table = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			table[c] = c < 128 ? 0 : 255;
+		}
+		assertCurvesEqual(Curves.perChannel(table, table, table), Curves.posterize(2));
+	}
+
+	@Test
+	public void perChannel_clampsEntries()
+	{
+		int[] table = ramp();
+		int[] clamped = ramp();
+		table[0] = -5;
+		clamped[0] = 0;
+		table[255] = 300;
+		clamped[255] = 255;
+		assertCurvesEqual(Curves.perChannel(clamped, clamped, clamped), Curves.perChannel(table, table, table));
+	}
+
+	@Test
+	public void perChannel_copiesTables()
+	{
+		int[] table = ramp();
+		Curves curves = Curves.perChannel(table, table, table);
+		table[10] = 0;
+		int[] ramp = ramp();
+		assertCurvesEqual(Curves.perChannel(ramp, ramp, ramp), curves);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void perChannel_rejectsShortTables()
+	{
+		int[] ramp = ramp();
+		Curves.perChannel(ramp, ramp, new int[255]);
+	}
+
+	@Test
+	public void mapPixels_keepsAlpha()
+	{
+		int[] pixels = {0x80123456, 0x00FFFFFF, 0xFF000000};
+		Curves.inverse().mapPixels(pixels, pixels.length);
+		assertArrayEquals(new int[]{0x80EDCBA9, 0x00000000, 0xFFFFFFFF}, pixels);
+	}
+
+	@Test
+	public void mapPixels_greyscaleWeighsPrimaries()
+	{
+		int[] pixels = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFFFFFFFF, 0x80000000};
+		Curves.greyscale().mapPixels(pixels, pixels.length);
+		//Weights of 54, 183 and 19 out of 256
+		assertArrayEquals(new int[]{0xFF353535, 0xFFB6B6B6, 0xFF121212, 0xFFFFFFFF, 0x80000000}, pixels);
+	}
+
+	@Test
+	public void mapPixels_duotoneMapsEndPoints()
+	{
+		int[] pixels = {0xFF000000, 0xFFFFFFFF, 0x40000000};
+		Curves.duotone(0xFF102030, 0xFFF0E0D0).mapPixels(pixels, pixels.length);
+		assertArrayEquals(new int[]{0xFF102030, 0xFFF0E0D0, 0x40102030}, pixels);
+	}
+
+	@Test
+	public void mapPixels_onlyMapsCount()
+	{
+		int[] pixels = {0xFF000000, 0xFF000000};
+		Curves.inverse().mapPixels(pixels, 1);
+		assertArrayEquals(new int[]{0xFFFFFFFF, 0xFF000000}, pixels);
+	}
+
+	private static int[] ramp()
+	{
+		int[] ramp = new int[256];
+		for(int c = 0; c < 256; c++)
+		{
+			ramp[c] = c;
+		}
+		return ramp;
+	}
+
+	private static void assertCurvesEqual(Curves expected, Curves actual)
+	{
+		assertEquals(expected, actual);
+		assertEquals(expected.hashCode(), actual.hashCode());
+	}
+}
@@ -0,0 +1,35 @@
+package net.scarlettsystems.android.glide;
+
+import com.bumptech.glide.load.Key;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * DiskCacheKeys.java
+ * Computes disk cache keys in tests, as Glide digests them.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+final class DiskCacheKeys
+{
+	private DiskCacheKeys(){}
+
+	/**
+	 * Returns the SHA-256 digest of the key's disk cache key.
+	 */
+	static byte[] of(Key key)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			key.updateDiskCacheKey(digest);
+			return digest.digest();
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
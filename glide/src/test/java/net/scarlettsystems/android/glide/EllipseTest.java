@@ -0,0 +1,57 @@
+package net.scarlettsystems.android.glide;
+
+import org.junit.Test;
+
+import java.security.MessageDigest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * EllipseTest.java
+ * Tests Ellipse's equality and disk cache key.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+public class EllipseTest
+{
+	@Test
+	public void sameSize_isEqual()
+	{
+		Ellipse a = new Ellipse().setSize(10, 20);
+		Ellipse b = new Ellipse().setSize(10, 20);
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertArrayEquals(DiskCacheKeys.of(a), DiskCacheKeys.of(b));
+	}
+
+	@Test
+	public void differentHeight_isNotEqual()
+	{
+		Ellipse a = new Ellipse().setSize(10, 20);
+		Ellipse b = new Ellipse().setSize(10, 30);
+		assertNotEquals(a, b);
+		assertFalse(MessageDigest.isEqual(DiskCacheKeys.of(a), DiskCacheKeys.of(b)));
+	}
+
+	@Test
+	public void setSize_usesArguments()
+	{
+		Ellipse a = new Ellipse().setSize(10, 20);
+		Ellipse b = new Ellipse().setSize(30, 40);
+		assertNotEquals(a, b);
+		assertFalse(MessageDigest.isEqual(DiskCacheKeys.of(a), DiskCacheKeys.of(b)));
+	}
+
+	@Test
+	public void pixelsDifferFromFractions()
+	{
+		Ellipse pixels = new Ellipse().setSize(1, 1);
+		Ellipse fraction = new Ellipse().setSizeFraction(1f, 1f);
+		assertNotEquals(pixels, fraction);
+		assertFalse(MessageDigest.isEqual(DiskCacheKeys.of(pixels), DiskCacheKeys.of(fraction)));
+	}
+}
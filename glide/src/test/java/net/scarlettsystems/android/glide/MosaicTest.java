@@ -0,0 +1,56 @@
+package net.scarlettsystems.android.glide;
+
+import org.junit.Test;
+
+import java.security.MessageDigest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * MosaicTest.java
+ * Tests Mosaic's equality and disk cache key.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+public class MosaicTest
+{
+	@Test
+	public void unconfigured_hasKey()
+	{
+		assertArrayEquals(DiskCacheKeys.of(new Mosaic()), DiskCacheKeys.of(new Mosaic()));
+	}
+
+	@Test
+	public void unsetPixelCounts_compareByValue()
+	{
+		Mosaic unset = new Mosaic();
+		Mosaic byFactor = new Mosaic().setByFactor(1f);
+		assertEquals(unset, byFactor);
+		assertEquals(unset.hashCode(), byFactor.hashCode());
+		assertArrayEquals(DiskCacheKeys.of(unset), DiskCacheKeys.of(byFactor));
+	}
+
+	@Test
+	public void pixelCounts_compareByValue()
+	{
+		//Outside the range of cached Integer instances
+		Mosaic a = new Mosaic().setByWidth(200);
+		Mosaic b = new Mosaic().setByWidth(200);
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertArrayEquals(DiskCacheKeys.of(a), DiskCacheKeys.of(b));
+	}
+
+	@Test
+	public void byHeight_differsFromByWidth()
+	{
+		Mosaic byWidth = new Mosaic().setByWidth(10);
+		Mosaic byHeight = new Mosaic().setByHeight(10);
+		assertNotEquals(byWidth, byHeight);
+		assertFalse(MessageDigest.isEqual(DiskCacheKeys.of(byWidth), DiskCacheKeys.of(byHeight)));
+	}
+}
@@ -0,0 +1,36 @@
+package net.scarlettsystems.android.glide;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * PaddedShadowTest.java
+ * Tests the padding PaddedShadow adds around the image for its shadow.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+public class PaddedShadowTest
+{
+	@Test
+	public void getPadding_withoutOffsetIsBlurRadius()
+	{
+		assertArrayEquals(new int[]{4, 4, 4, 4}, PaddedShadow.getPadding(4f, 0f, 0f));
+	}
+
+	@Test
+	public void getPadding_addsOffsetOnSidesItPointsTo()
+	{
+		//Left, top, right and bottom
+		assertArrayEquals(new int[]{4, 6, 7, 4}, PaddedShadow.getPadding(4f, 3f, -2f));
+		assertArrayEquals(new int[]{7, 4, 4, 6}, PaddedShadow.getPadding(4f, -3f, 2f));
+	}
+
+	@Test
+	public void getPadding_roundsUp()
+	{
+		assertArrayEquals(new int[]{3, 3, 3, 3}, PaddedShadow.getPadding(2.5f, 0.2f, 0f));
+		assertArrayEquals(new int[]{0, 0, 0, 0}, PaddedShadow.getPadding(0f, 0f, 0f));
+	}
+}
@@ -0,0 +1,118 @@
+package net.scarlettsystems.android.glide;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TransformationStatsTest.java
+ * Tests the power of two buckets and the percentile estimates drawn from them.
+ *
+ * @author Shane Scarlett
+ * @version 1.0.0
+ */
+public class TransformationStatsTest
+{
+	@Test
+	public void bucketOf_powersOfTwoStartBuckets()
+	{
+		assertEquals(0, TransformationStats.bucketOf(1));
+		assertEquals(1, TransformationStats.bucketOf(2));
+		assertEquals(1, TransformationStats.bucketOf(3));
+		assertEquals(2, TransformationStats.bucketOf(4));
+		assertEquals(10, TransformationStats.bucketOf(1024));
+		assertEquals(10, TransformationStats.bucketOf(2047));
+		assertEquals(62, TransformationStats.bucketOf(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void bucketOf_nonPositiveValuesUseFirstBucket()
+	{
+		assertEquals(0, TransformationStats.bucketOf(0));
+		assertEquals(0, TransformationStats.bucketOf(-5));
+	}
+
+	@Test
+	public void percentile_emptyIsZero()
+	{
+		assertEquals(0, TransformationStats.percentile(new long[64], 0.5));
+	}
+
+	@Test
+	public void percentile_isGeometricMiddleOfBucket()
+	{
+		long[] buckets = new long[64];
+		buckets[10] = 1;
+		assertEquals(middleOf(10), TransformationStats.percentile(buckets, 0.5));
+		assertEquals(middleOf(10), TransformationStats.percentile(buckets, 0.99));
+	}
+
+	@Test
+	public void percentile_findsBucketByRank()
+	{
+		long[] buckets = new long[64];
+		buckets[3] = 99;
+		buckets[20] = 1;
+		assertEquals(middleOf(3), TransformationStats.percentile(buckets, 0.5));
+		assertEquals(middleOf(3), TransformationStats.percentile(buckets, 0.99));
+		assertEquals(middleOf(20), TransformationStats.percentile(buckets, 0.995));
+		assertEquals(middleOf(20), TransformationStats.percentile(buckets, 1.0));
+	}
+
+	@Test
+	public void percentile_clampsFraction()
+	{
+		long[] buckets = new long[64];
+		buckets[3] = 1;
+		buckets[20] = 1;
+		assertEquals(middleOf(3), TransformationStats.percentile(buckets, -1.0));
+		assertEquals(middleOf(20), TransformationStats.percentile(buckets, 2.0));
+	}
+
+	@Test
+	public void record_isExactAcrossThreads() throws InterruptedException
+	{
+		final String name = "TransformationStatsTest.threads";
+		final int threads = 8;
+		final int records = 1000;
+		Thread[] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++)
+		{
+			workers[t] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for(int c = 0; c < records; c++)
+					{
+						TransformationStats.record(name, 10, 20, 1000 + c);
+					}
+				}
+			});
+			workers[t].start();
+		}
+		for(Thread worker : workers)
+		{
+			worker.join();
+		}
+
+		TransformationStats.Snapshot snapshot = TransformationStats.snapshot(name);
+		long nanosPerThread = (long)records * 1000 + (long)records * (records - 1) / 2;
+		assertEquals(threads * records, snapshot.count);
+		assertEquals(threads * nanosPerThread, snapshot.totalNanos);
+		assertEquals(threads * records * 200L, snapshot.totalPixels);
+		assertEquals(middleOf(TransformationStats.bucketOf(1500)), snapshot.getP50Nanos());
+
+		TransformationStats.reset();
+		snapshot = TransformationStats.snapshot(name);
+		assertEquals(0, snapshot.count);
+		assertEquals(0, snapshot.totalNanos);
+		assertEquals(0, snapshot.totalPixels);
+		assertEquals(0, snapshot.getP99Nanos());
+	}
+
+	private static long middleOf(int bucket)
+	{
+		return (long)((1L << bucket) * Math.sqrt(2.0));
+	}
+}